@@ -10,7 +10,9 @@ public class AgentA {
      * This method assesses the game board to make determinations based on the
      * current state of each cell and its neighboring clues. It does not directly
      * modify the board but instead evaluates the completeness and consistency of
-     * the game state.
+     * the game state. The board keeps its covered cells and unsatisfiable clues
+     * counted as moves are made, so this is a constant time query; see
+     * {@link #verify} for a full recomputation.
      *
      * @param board   The game board instance to be evaluated, containing the
      *                current state of each cell and clues.
@@ -25,41 +27,26 @@ public class AgentA {
      *         - 3: Consistent board state and all cells are uncovered.
      */
     public int run(Game board, boolean verbose) {
-        boolean allUncovered = true;
-        boolean isConsistent = true;
-
-        for (int i = 0; i < board.size; i++) {
-            for (int j = 0; j < board.size; j++) {
-                if (board.state[i][j] == board.COVERED) {
-                    allUncovered = false; // There are still covered cells
-                    // continue; // Skip covered cells for inconsistency checks
-                }
-
-                int clue = board.board[i][j];
-                if (clue != -1) { // if it has a clue
-                    int[] neighbors = board.getNeighborsStates(i, j); // check the neighbor states
-                    int painted = 0, covered = 0;
+        return status(board.getCoveredCount() == 0, board.getViolatedCount() == 0);
+    }
 
-                    if (board.state[i][j] == board.PAINTED) {
-                        painted++;
-                    }
-                    if (board.state[i][j] == board.COVERED) {
-                        covered++;
-                    }
+    /**
+     * Recomputes the AgentA status from scratch, without relying on the
+     * counters maintained by the board. The whole board is checked at once by
+     * {@link BoardChecker}, in parallel row stripes for large boards.
+     *
+     * @param board   The game board instance to be evaluated, containing the
+     *                current state of each cell and clues.
+     * @param verbose A boolean flag that, when true, enables the printing of
+     *                detailed execution logs for debugging or informational
+     *                purposes.
+     * @return the same status code as {@link #run}
+     */
+    public int verify(Game board, boolean verbose) {
+        return status(BoardChecker.allUncovered(board), BoardChecker.isConsistent(board));
+    }
 
-                    for (int neighbor : neighbors) {
-                        if (neighbor == board.PAINTED) {
-                            painted++;
-                        } else if (neighbor == board.COVERED) {
-                            covered++;
-                        }
-                    }
-                    if (painted + covered < clue) {
-                        isConsistent = false;
-                    }
-                }
-            }
-        }
+    private static int status(boolean allUncovered, boolean isConsistent) {
         if (allUncovered) { // if all cells are uncovered
             if (isConsistent) {
                 return 3;
@@ -74,4 +61,4 @@ public class AgentA {
             }
         }
     }
-}
+}
\ No newline at end of file
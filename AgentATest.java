@@ -49,4 +49,22 @@ public class AgentATest {
         int result = agentA.run(board, false);
         assertEquals("Should return 0 for covered cells remaining and inconsistent", 0, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStatusFollowsMoves() {
+        // the status comes from counters kept by the board, so it must follow
+        // every move and agree with a full rescan
+        board = new Game();
+        board.setGame(".1*,.1_;.1_,.1_");
+        assertEquals("Should start consistent with covered cells", 2, agentA.run(board, false));
+        board.clear(0, 0);
+        board.clear(0, 1);
+        board.clear(1, 0);
+        board.clear(1, 1);
+        assertEquals("Clearing every cell leaves the clues unmet", 1, agentA.run(board, false));
+        assertEquals("Rescan should agree with the counters", agentA.verify(board, false), agentA.run(board, false));
+        board.paint(0, 0);
+        assertEquals("Should return 3 once solved", 3, agentA.run(board, false));
+        assertEquals("Rescan should agree with the counters", agentA.verify(board, false), agentA.run(board, false));
+    }
+}
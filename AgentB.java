@@ -1,20 +1,45 @@
-import java.util.List;
-import java.util.ArrayList;
-
 /**
  * AgentB.java
  * 
  */
 public class AgentB {
 
+    private final boolean subsetReasoning;
+
+    /**
+     * Creates an AgentB that also reasons over pairs of overlapping clues.
+     */
+    public AgentB() {
+        this(true);
+    }
+
+    /**
+     * @param subsetReasoning whether to combine overlapping clues once the
+     *                        single-clue rules are exhausted; false keeps only
+     *                        the two single-clue rules
+     */
+    public AgentB(boolean subsetReasoning) {
+        this.subsetReasoning = subsetReasoning;
+    }
+
     /**
      * Executes the AgentB strategy on a given Mosaic game board by making moves
      * based on simple logical deductions.
      *
-     * This method iterates over the game board, applying a straightforward strategy
-     * to either paint or clear cells based on the clues and the current state of
-     * their neighbors. The strategy seeks to make moves that are directly
-     * deductible without resorting to complex logical inferences or backtracking.
+     * This method applies a straightforward strategy to either paint or clear
+     * cells based on the clues and the current state of their neighbors. The
+     * strategy seeks to make moves that are directly deductible without
+     * resorting to complex logical inferences or backtracking.
+     *
+     * Clues are kept in a worklist: every clue with covered cells around it is
+     * examined once, and after that a clue is only examined again when one of
+     * the cells in its window is painted or cleared. The painted and covered
+     * counts come from the counters kept by the board, so the work done is
+     * proportional to the moves made rather than to the number of sweeps.
+     *
+     * When no single clue allows a move, pairs of clues whose windows overlap
+     * are compared (see {@link #deduceFromPairs}); every move found that way
+     * goes back to the cheap single-clue rules.
      *
      * @param board   The game board instance to be manipulated, containing the
      *                current state of each cell and clues. The method directly
@@ -25,57 +50,209 @@ public class AgentB {
      */
 
     public void run(Game board, boolean verbose) {
-        boolean moveMade;
+        int cells = board.size * board.size;
+        IntWorklist dirty = new IntWorklist(cells); // clues for the single-clue rules
+        IntWorklist pairs = new IntWorklist(cells); // clues for the pair rules
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (isOpen(board, cell)) {
+                dirty.add(cell);
+                pairs.add(cell);
+            }
+        }
 
         do {
-            moveMade = false;
-            for (int i = 0; i < board.size; i++) {
-                for (int j = 0; j < board.size; j++) {
-
-                    int clue = board.board[i][j];
-
-                    if (clue != -1) { // if it has a clue
-
-                        int painted = 0, covered = 0;
-                        List<int[]> coveredCells = new ArrayList<>();
-
-                        for (int[] dir : new int[][] {
-                                { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 },
-                                { -1, -1 }, { -1, 1 }, { 1, -1 }, { 1, 1 }, { 0, 0 }
-                        }) {
-                            int ni = i + dir[0], nj = j + dir[1];
-                            if (ni >= 0 && ni < board.size && nj >= 0 && nj < board.size) {
-                                int state = board.state[ni][nj];
-                                if (state == board.PAINTED) {
-                                    painted++;
-                                } else if (state == board.COVERED) {
-                                    covered++;
-                                    coveredCells.add(new int[] { ni, nj });
-                                }
-                            }
-                        }
-
-                        if (clue == painted) {
-                            for (int[] cell : coveredCells) {
-
-                                board.clear(cell[0], cell[1]);
-                                moveMade = true;
-                            }
-
-                        } else if (clue - painted == covered) {
-                            for (int[] cell : coveredCells) {
-                                board.paint(cell[0], cell[1]);
-                                moveMade = true;
-                            }
-                        }
-
-                        if (verbose && moveMade) {
-                            System.out.println("Move made at: " + i + ", " + j);
-                            board.printBoard();
-                        }
-                    }
+            propagate(board, dirty, pairs, verbose);
+        } while (subsetReasoning && deduceFromPairs(board, dirty, pairs, verbose));
+    }
+
+    private void propagate(Game board, IntWorklist dirty, IntWorklist pairs, boolean verbose) {
+        Neighbourhood neighbourhood = board.getNeighbourhood();
+        while (!dirty.isEmpty()) {
+            int cell = dirty.poll();
+            int clue = board.getClue(cell);
+            int painted = board.paintedAround(cell);
+            int covered = board.coveredAround(cell);
+            if (covered == 0) {
+                continue; // nothing left to decide around this clue
+            }
+
+            boolean paint;
+            if (clue == painted) {
+                paint = false;
+            } else if (clue - painted == covered) {
+                paint = true;
+            } else {
+                continue;
+            }
+
+            for (int offset : neighbourhood.window(cell)) {
+                int neighbor = cell + offset;
+                if (board.getState(neighbor) == board.COVERED) {
+                    move(board, neighbor, paint, dirty, pairs);
                 }
             }
-        } while (moveMade);
+
+            if (verbose) {
+                System.out.println("Move made at: " + cell / board.size + ", " + cell % board.size);
+                board.printChanges(); // only the rows that changed
+            }
+        }
+    }
+
+    /**
+     * Looks for moves that follow from two clues whose windows overlap.
+     *
+     * For clues A and B, the covered cells around them split into the shared
+     * cells S and the cells only A or only B can see. With rA and rB the paint
+     * still missing around each clue, the paint in S is bounded by
+     * max(0, rA - |onlyA|, rB - |onlyB|) and min(|S|, rA, rB), and whatever is
+     * not in S must be in the exclusive parts. When a bound leaves no choice
+     * for a region (none of its cells, or all of them, can be painted), that
+     * region is cleared or painted. This covers the classic subset rule
+     * (A's covered cells inside B's) as well as partial overlaps.
+     *
+     * Clues are taken from their own worklist, so a clue is only compared
+     * with its neighbours again after something changed around it.
+     *
+     * @return true if at least one move was made
+     */
+    private boolean deduceFromPairs(Game board, IntWorklist dirty, IntWorklist pairs, boolean verbose) {
+        while (!pairs.isEmpty()) {
+            int cell = pairs.poll();
+            if (isOpen(board, cell) && deducePairsAround(board, cell, dirty, pairs, verbose)) {
+                pairs.add(cell); // there may be more to find around this clue
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean deducePairsAround(Game board, int a, IntWorklist dirty, IntWorklist pairs, boolean verbose) {
+        int size = board.size;
+        int row = a / size, col = a % size;
+        long coveredA = boxMask(coveredMask(board, a), 0, 0);
+        int missingA = board.getClue(a) - board.paintedAround(a);
+
+        // clues within two rows and columns are the only ones that can overlap
+        for (int dr = -2; dr <= 2; dr++) {
+            for (int dc = -2; dc <= 2; dc++) {
+                int r = row + dr, c = col + dc;
+                if ((dr == 0 && dc == 0) || r < 0 || r >= size || c < 0 || c >= size) {
+                    continue;
+                }
+                int b = a + dr * size + dc;
+                if (!isOpen(board, b)) {
+                    continue;
+                }
+                long coveredB = boxMask(coveredMask(board, b), dr, dc);
+                long shared = coveredA & coveredB;
+                if (shared == 0) {
+                    continue;
+                }
+                long onlyA = coveredA & ~coveredB;
+                long onlyB = coveredB & ~coveredA;
+                int missingB = board.getClue(b) - board.paintedAround(b);
+                int sizeS = Long.bitCount(shared);
+                int sizeA = Long.bitCount(onlyA);
+                int sizeB = Long.bitCount(onlyB);
+
+                int maxShared = Math.min(sizeS, Math.min(missingA, missingB));
+                int minShared = Math.max(0, Math.max(missingA - sizeA, missingB - sizeB));
+                if (minShared > maxShared) {
+                    continue; // the clues contradict each other, leave it to AgentA
+                }
+
+                long paintMask = 0, clearMask = 0;
+                if (minShared == sizeS) {
+                    paintMask |= shared;
+                } else if (maxShared == 0) {
+                    clearMask |= shared;
+                }
+                if (missingA - maxShared == sizeA) {
+                    paintMask |= onlyA;
+                } else if (missingA - minShared == 0) {
+                    clearMask |= onlyA;
+                }
+                if (missingB - maxShared == sizeB) {
+                    paintMask |= onlyB;
+                } else if (missingB - minShared == 0) {
+                    clearMask |= onlyB;
+                }
+                if ((paintMask | clearMask) == 0 || (paintMask & clearMask) != 0) {
+                    continue;
+                }
+
+                applyBox(board, a, paintMask, true, dirty, pairs);
+                applyBox(board, a, clearMask, false, dirty, pairs);
+                if (verbose) {
+                    System.out.println("Move made from clues at: " + row + ", " + col + " and " + r + ", " + c);
+                    board.printChanges(); // only the rows that changed
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isOpen(Game board, int cell) {
+        // a clue that still has covered cells to decide
+        return board.getClue(cell) != -1 && board.coveredAround(cell) > 0;
+    }
+
+    private void move(Game board, int cell, boolean paint, IntWorklist dirty, IntWorklist pairs) {
+        if (paint) {
+            board.paint(cell);
+        } else {
+            board.clear(cell);
+        }
+        // the clues that can see the changed cell need another look
+        for (int offset : board.getNeighbourhood().window(cell)) {
+            int other = cell + offset;
+            if (isOpen(board, other)) {
+                dirty.add(other);
+                pairs.add(other);
+            }
+        }
+    }
+
+    /**
+     * Returns the covered cells of a clue's window as a 9-bit mask, bit
+     * (dr + 1) * 3 + (dc + 1) standing for the cell at offset (dr, dc).
+     */
+    private int coveredMask(Game board, int cell) {
+        int onBoard = board.getNeighbourhood().mask(cell);
+        int mask = 0;
+        for (int p = 0; p < 9; p++) {
+            if ((onBoard >> p & 1) != 0
+                    && board.getState(cell + (p / 3 - 1) * board.size + p % 3 - 1) == board.COVERED) {
+                mask |= 1 << p;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Moves a 9-bit window mask of a clue at offset (dr, dc) from the centre
+     * clue into the 7x7 box around the centre clue (large enough for both
+     * windows), bit (r + 3) * 7 + (c + 3) standing for the cell at offset (r, c).
+     */
+    private static long boxMask(int window, int dr, int dc) {
+        long box = 0;
+        for (int p = 0; p < 9; p++) {
+            if ((window >> p & 1) != 0) {
+                box |= 1L << ((p / 3 + 2 + dr) * 7 + p % 3 + 2 + dc);
+            }
+        }
+        return box;
+    }
+
+    private void applyBox(Game board, int centre, long box, boolean paint, IntWorklist dirty, IntWorklist pairs) {
+        while (box != 0) {
+            int bit = Long.numberOfTrailingZeros(box);
+            box &= box - 1;
+            int cell = centre + (bit / 7 - 3) * board.size + bit % 7 - 3;
+            move(board, cell, paint, dirty, pairs);
+        }
     }
-}
\ No newline at end of file
+}
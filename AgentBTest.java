@@ -21,7 +21,7 @@ public class AgentBTest {
                 { board.PAINTED, board.PAINTED },
                 { board.COVERED, board.PAINTED }
         };
-        assertArrayEquals("Cells should be painted based on clues", expectedState, board.state);
+        assertArrayEquals("Cells should be painted based on clues", expectedState, board.getStateMatrix());
     }
 
     @Test
@@ -33,7 +33,7 @@ public class AgentBTest {
                 { board.CLEARED, board.CLEARED },
                 { board.COVERED, board.PAINTED }
         };
-        assertArrayEquals("Cells should be cleared based on clues", expectedState, board.state);
+        assertArrayEquals("Cells should be cleared based on clues", expectedState, board.getStateMatrix());
     }
 
     @Test
@@ -45,7 +45,7 @@ public class AgentBTest {
                 { board.COVERED, board.COVERED },
                 { board.COVERED, board.PAINTED }
         };
-        assertArrayEquals("No moves should be made if not deducible", expectedState, board.state);
+        assertArrayEquals("No moves should be made if not deducible", expectedState, board.getStateMatrix());
     }
 
     // Additional test for complex deduction where multiple moves are made
@@ -59,7 +59,7 @@ public class AgentBTest {
                 { board.PAINTED, board.PAINTED },
                 { board.PAINTED, board.CLEARED }
         };
-        assertArrayEquals("Multiple moves should be made based on complex clues", expectedState, board.state);
+        assertArrayEquals("Multiple moves should be made based on complex clues", expectedState, board.getStateMatrix());
     }
 
     // Test to ensure the agent stops when no moves can be made
@@ -71,7 +71,7 @@ public class AgentBTest {
         boolean anyCovered = false;
         for (int i = 0; i < board.size; i++) {
             for (int j = 0; j < board.size; j++) {
-                if (board.state[i][j] == board.COVERED) {
+                if (board.getState(i, j) == board.COVERED) {
                     anyCovered = true;
                     break;
                 }
@@ -79,4 +79,24 @@ public class AgentBTest {
         }
         assertEquals("Agent should stop when no more moves can be made", true, anyCovered);
     }
+
+    // Test that overlapping clues are combined when no single clue allows a move
+    @Test
+    public void testOverlappingCluesDeduction() {
+        String spec = ".-_,.1_,.1_;.1_,.1*,.1_;.-_,.1_,.-_"; // only the centre is painted
+        board = new Game();
+        board.setGame(spec);
+        new AgentB(false).run(board, false);
+        assertEquals("Single-clue rules alone should not make any move", 9, board.getCoveredCount());
+
+        board = new Game();
+        board.setGame(spec);
+        agentB.run(board, false);
+        int[][] expectedState = {
+                { board.CLEARED, board.CLEARED, board.CLEARED },
+                { board.CLEARED, board.PAINTED, board.CLEARED },
+                { board.CLEARED, board.CLEARED, board.CLEARED }
+        };
+        assertArrayEquals("Overlapping clues should solve the board", expectedState, board.getStateMatrix());
+    }
 }
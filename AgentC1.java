@@ -1,5 +1,6 @@
 import org.logicng.datastructures.Assignment;
 import org.logicng.formulas.Formula;
+import org.logicng.formulas.Literal;
 import org.logicng.formulas.Variable;
 import org.logicng.formulas.FormulaFactory;
 import org.logicng.io.parsers.ParserException;
@@ -9,14 +10,77 @@ import org.logicng.solvers.SATSolver;
 import org.logicng.datastructures.Tristate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class AgentC1 {
 
+    /**
+     * How the clues are turned into clauses for the solver.
+     */
+    public enum Encoding {
+        /**
+         * The original encoding: one DNF term per way of satisfying a clue,
+         * converted to CNF with {@link Formula#cnf()}. Kept for comparison.
+         */
+        DNF,
+        /**
+         * Each clue as an exactly-k sequential counter written directly as
+         * clauses, with auxiliary counter variables, in a
+         * {@link MosaicSatSession} that is kept between runs on the same
+         * board.
+         */
+        SEQUENTIAL_COUNTER
+    }
+
     FormulaFactory f = new FormulaFactory();
     PropositionalParser p = new PropositionalParser(f);
 
-    private Formula knowledgeBase;
+    private final Encoding encoding;
+    private final boolean backbone; // apply only the cells every solution agrees on
+    private Formula knowledgeBase; // DNF encoding
+    private MosaicSatSession session; // sequential counter encoding, reused while the board matches
+    private CellVariables variables; // cell <-> variable of the current encoding
+    private boolean decompose; // solve every frontier component on its own
+
+    /**
+     * Creates an AgentC1 using the sequential counter encoding.
+     */
+    public AgentC1() {
+        this(Encoding.SEQUENTIAL_COUNTER);
+    }
+
+    /**
+     * @param encoding how the clues are turned into clauses
+     */
+    public AgentC1(Encoding encoding) {
+        this(encoding, false);
+    }
+
+    /**
+     * @param encoding how the clues are turned into clauses
+     * @param backbone true to apply only the cells that have the same value in
+     *                 every solution (see {@link Backbone}), false to apply the
+     *                 whole first model found
+     */
+    public AgentC1(Encoding encoding, boolean backbone) {
+        this.encoding = encoding;
+        this.backbone = backbone;
+    }
+
+    /**
+     * Solves every following run component by component (see
+     * {@link Frontier}), in parallel, instead of as one formula for the whole
+     * board. Components always use the sequential counter encoding, in a
+     * fresh solver each.
+     *
+     * @param decompose true to split the board into components
+     */
+    public void setDecompose(boolean decompose) {
+        this.decompose = decompose;
+    }
 
     /**
      * Implements AgentC1, a logic-based agent that uses propositional logic and SAT
@@ -25,12 +89,21 @@ public class AgentC1 {
      * This class encapsulates the logic for converting Mosaic game clues into a set
      * of propositional logic formulas, which are then solved using a SAT solver.
      * The agent iterates over the game board, encoding the clues into formulas that
-     * represent the game's constraints. These formulas are combined into a
-     * knowledge base, which is then converted into Conjunctive Normal Form (CNF)
-     * and solved using the MiniSat solver from the LogicNG library.
+     * represent the game's constraints. Before any encoding, plain propagation
+     * (see {@link AgentB}) settles the clues whose covered cells must all be
+     * painted or all be cleared, and only the clues that still touch covered
+     * cells are encoded, each with its value minus the painted cells around
+     * it. With the sequential counter encoding these clues are written
+     * straight as clauses into a solver session: later runs reuse it, passing
+     * the cells resolved since as assumptions, until half of its cells are
+     * resolved and it is built again over what is left. With the DNF encoding
+     * the formulas are combined into a knowledge base which is then converted
+     * into Conjunctive Normal Form (CNF) on every run. Either way the clauses
+     * are solved using the MiniSat solver from the LogicNG library.
      * 
      * Upon finding a solution, the agent updates the game board by painting or
-     * clearing cells based on the model returned by the SAT solver. This approach
+     * clearing cells based on the model returned by the SAT solver, or, in
+     * backbone mode, only the cells that every solution agrees on. This approach
      * allows for the efficient solving of Mosaic puzzles by leveraging the power of
      * SAT solvers to handle complex logical deductions.
      * 
@@ -45,16 +118,55 @@ public class AgentC1 {
      */
     public void run(Game board, boolean verbose) {
 
+        new AgentB(false).run(board, verbose); // unit propagation on the clue counts
+
+        if (decompose) {
+            Frontier frontier = Frontier.of(board);
+            try {
+                processMoves(frontier.solve((cells, clues) -> solveComponent(frontier, cells, clues, board)), board,
+                        verbose);
+            } catch (ExecutionException e) {
+                System.err.println("Error solving component: " + e.getCause());
+            }
+            return;
+        }
+
+        if (encoding == Encoding.SEQUENTIAL_COUNTER) {
+            if (session == null || !session.matches(board)) {
+                session = new MosaicSatSession(f, board); // encodes the open clues once
+            }
+            variables = session.variables();
+            if (backbone) {
+                processForced(session.backbone(), board, verbose);
+            } else if (session.solve() == Tristate.TRUE) {
+                processModel(session.model(), board, verbose);
+            } else {
+                System.err.println("No solution found, or puzzle is unsolvable under current constraints.");
+            }
+            return;
+        }
+
         knowledgeBase = f.verum(); // Initialize the knowledge base with True
+        if (variables == null || variables.size() != board.size) {
+            variables = new CellVariables(f, board.size);
+        }
 
         // encode the clues and construct the knowledge base
         for (int i = 0; i < board.size; i++) {
             for (int j = 0; j < board.size; j++) {
 
-                int clue = board.board[i][j];
+                int clue = board.getClue(i, j);
                 if (clue != -1) { // if it has a clue
+                    int cell = board.index(i, j);
+                    int needed = clue - board.paintedAround(cell); // painted cells already count
+                    if (board.coveredAround(cell) == 0) {
+                        if (needed != 0) {
+                            knowledgeBase = f.falsum(); // resolved around but not met
+                        }
+                        continue;
+                    }
                     try {
-                        encodeClue(i, j, clue, board); // encode all possibilites for the clue
+                        encodeClue(i, j, needed, board); // encode all possibilites for the clue
                     } catch (ParserException e) {
                         System.out.println("Error encoding clue: " + e.getMessage());
                     }
@@ -62,10 +174,19 @@ public class AgentC1 {
             }
         }
 
-        Formula cnf = knowledgeBase.cnf(); // Convert the knowledge base to CNF
-
         SATSolver solver = MiniSat.miniSat(f);
-        solver.add(cnf);
+        solver.add(knowledgeBase.cnf()); // Convert the knowledge base to CNF
+
+        if (backbone) {
+            List<Variable> candidates = new ArrayList<>();
+            for (int cell = 0; cell < board.size * board.size; cell++) {
+                if (board.getState(cell) == board.COVERED && board.isNextToClue(cell)) {
+                    candidates.add(variables.variable(cell));
+                }
+            }
+            processForced(Backbone.of(solver, Collections.emptyList(), candidates), board, verbose);
+            return;
+        }
 
         Tristate result = solver.sat();
         if (result == Tristate.TRUE) {
@@ -85,8 +206,8 @@ public class AgentC1 {
      * game board accordingly.
      * 
      * Positive variables in the model indicate cells that should be painted, while
-     * negative variables indicate cells that should be cleared. The method extracts
-     * the coordinates of each cell from the variable names and updates the game
+     * negative variables indicate cells that should be cleared. The method looks
+     * up the cell of each variable in the variable table and updates the game
      * board to reflect the solution found by the SAT solver.
      * 
      * @param model   The model returned by the SAT solver, containing the truth
@@ -101,36 +222,152 @@ public class AgentC1 {
      *                to solve the puzzle.
      */
     private void processModel(Assignment model, Game board, boolean verbose) {
-        model.positiveVariables().forEach(variable -> {
-            String varName = variable.name();
-            // Extract coordinates and state from variable name
-            String[] parts = varName.split("_");
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
+        for (Variable variable : model.positiveVariables()) {
+            int cell = variables.cell(variable);
+            if (cell < 0 || board.getState(cell) != board.COVERED) {
+                continue; // auxiliary variable, or a cell that was already resolved
+            }
 
             // Update the board state based on the variable
-            board.state[x][y] = board.PAINTED;
+            board.paint(cell);
 
             if (verbose) {
-                System.out
-                        .println("Updating cell [" + x + ", " + y + "] to PAINTED");
+                System.out.println("Updating cell [" + cell / board.size + ", " + cell % board.size + "] to PAINTED");
+            }
+        }
+        for (Variable variable : model.negativeVariables()) {
+            int cell = variables.cell(variable);
+            if (cell < 0 || board.getState(cell) != board.COVERED) {
+                continue; // auxiliary variable, or a cell that was already resolved
             }
-
-        });
-        model.negativeVariables().forEach(variable -> {
-            String varName = variable.name();
-            // Extract coordinates and state from variable name
-            String[] parts = varName.split("_");
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
 
             // Update the board state based on the variable
-            board.state[x][y] = board.CLEARED;
+            board.clear(cell);
 
             if (verbose) {
-                System.out.println("Updating cell [" + x + ", " + y + "] to COVERED");
+                System.out.println("Updating cell [" + cell / board.size + ", " + cell % board.size + "] to COVERED");
             }
-        });
+        }
+    }
+
+    /**
+     * Applies the literals of a backbone to the game board: positive literals
+     * paint their cell and negative ones clear it.
+     *
+     * @param forced  the forced literals, or null if the clues could not be
+     *                satisfied
+     * @param board   the game board to update
+     * @param verbose whether to print every cell that is updated
+     */
+    private void processForced(List<Literal> forced, Game board, boolean verbose) {
+        if (forced == null) {
+            System.err.println("No solution found, or puzzle is unsolvable under current constraints.");
+            return;
+        }
+        for (Literal literal : forced) {
+            int cell = variables.cell(literal.variable());
+            if (cell < 0 || board.getState(cell) != board.COVERED) {
+                continue;
+            }
+            if (literal.phase()) {
+                board.paint(cell);
+            } else {
+                board.clear(cell);
+            }
+
+            if (verbose) {
+                System.out.println("Updating cell [" + cell / board.size + ", " + cell % board.size + "] to "
+                        + (literal.phase() ? "PAINTED" : "COVERED"));
+            }
+        }
+    }
+
+    /**
+     * Solves one component of the frontier in its own factory and solver, so
+     * that components can be solved on different threads. Every clue of the
+     * component needs its value minus the painted cells around it from the
+     * covered cells of its window.
+     *
+     * @return the moves for the cells of the component, as for
+     *         {@link Frontier.ComponentSolver}
+     */
+    private int[] solveComponent(Frontier frontier, int[] cells, int[] clues, Game board) {
+        FormulaFactory factory = new FormulaFactory(); // factories are not thread-safe
+        CellVariables cellVariables = new CellVariables(factory, board.size);
+        Variable[] vars = new Variable[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            vars[i] = cellVariables.variable(cells[i]);
+        }
+
+        List<Formula> componentClauses = new ArrayList<>();
+        int[] window = new int[9];
+        List<Variable> covered = new ArrayList<>(9);
+        for (int clue : clues) {
+            int count = frontier.windowVariables(clue, cells, window);
+            covered.clear();
+            for (int i = 0; i < count; i++) {
+                covered.add(vars[window[i] - 1]);
+            }
+            int needed = board.getClue(clue) - board.paintedAround(clue);
+            if (needed < 0) {
+                componentClauses.add(factory.falsum()); // too many painted already
+            } else {
+                MosaicSatSession.exactly(factory, covered, needed, componentClauses);
+            }
+        }
+        SATSolver solver = MiniSat.miniSat(factory);
+        solver.add(componentClauses);
+
+        if (backbone) {
+            List<Literal> forced = Backbone.of(solver, Collections.emptyList(), Arrays.asList(vars));
+            if (forced == null) {
+                return null;
+            }
+            int[] moves = new int[forced.size()];
+            for (int i = 0; i < moves.length; i++) {
+                Literal literal = forced.get(i);
+                int cell = cellVariables.cell(literal.variable());
+                moves[i] = literal.phase() ? cell + 1 : -(cell + 1);
+            }
+            return moves;
+        }
+        if (solver.sat() != Tristate.TRUE) {
+            return null;
+        }
+        Assignment model = solver.model();
+        int[] moves = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            moves[i] = model.evaluateLit(vars[i]) ? cells[i] + 1 : -(cells[i] + 1);
+        }
+        return moves;
+    }
+
+    /**
+     * Applies the moves found for the frontier components to the game board.
+     *
+     * @param moves   cell + 1 to paint a cell and -(cell + 1) to clear it, or
+     *                null if some component could not be satisfied
+     * @param board   the game board to update
+     * @param verbose whether to print every cell that is updated
+     */
+    private void processMoves(int[] moves, Game board, boolean verbose) {
+        if (moves == null) {
+            System.err.println("No solution found, or puzzle is unsolvable under current constraints.");
+            return;
+        }
+        for (int move : moves) {
+            int cell = Math.abs(move) - 1;
+            if (move > 0) {
+                board.paint(cell);
+            } else {
+                board.clear(cell);
+            }
+
+            if (verbose) {
+                System.out.println("Updating cell [" + cell / board.size + ", " + cell % board.size + "] to "
+                        + (move > 0 ? "PAINTED" : "COVERED"));
+            }
+        }
     }
 
     /**
@@ -152,8 +389,9 @@ public class AgentC1 {
      * @param i     The row index of the cell for which the clue is being encoded.
      * @param j     The column index of the cell for which the clue is being
      *              encoded.
-     * @param clue  The value of the clue, indicating the number of neighboring
-     *              cells that must be painted.
+     * @param clue  The number of covered neighboring cells that must still be
+     *              painted: the value of the clue minus the painted cells
+     *              around it.
      * @param board The game board object, used to access the puzzle's layout and
      *              state.
      * @throws ParserException If there is an error in parsing the logical formula,
@@ -161,16 +399,14 @@ public class AgentC1 {
      */
 
     public void encodeClue(int i, int j, int clue, Game board) throws ParserException {
-        List<Variable> neighbors = new ArrayList<>();
+        int cell = board.index(i, j);
+        Variable[] window = getWindowVariables(cell, board); // includes the cell itself
 
-        neighbors = getNeighborVariables(i, j, board); // includes the cell itself
-
-        // For a clue of n, find all combinations of n neighbors being painted
+        // One term for every way of painting exactly clue of the covered
+        // cells (a single all-cleared term when clue is 0), straight from the
+        // precomputed window patterns
         List<Formula> combinations = new ArrayList<>();
-        if (clue > 0) {
-            // Generating combinations for the clue
-            generateCombinations(combinations, neighbors, clue);
-        }
+        generateCombinations(combinations, window, board.getNeighbourhood().mask(cell), clue);
 
         // Combine all combinations with OR to form the DNF formula
         Formula clueFormula = f.or(combinations);
@@ -183,115 +419,64 @@ public class AgentC1 {
     }
 
     /**
-     * Generates all possible combinations of variables representing neighbors to be
-     * painted, given a clue, and adds these combinations as formulas to a list.
+     * Generates one formula for every way of satisfying a clue and adds them to
+     * a list.
      * 
-     * This method is used to generate all valid configurations of painted cells
-     * around a cell with a given clue. It creates combinations of variables where a
-     * subset of variables (representing cells) are set to true (painted) based on
-     * the clue number, and the remaining variables are set to false (not painted).
-     * Each combination is converted into a conjunction formula (AND of variables)
-     * and added to the provided list of formulas.
-     * 
-     * The method first generates all subsets of neighbor variables that match the
-     * clue number using a helper method to generate subsets. For each subset, it
-     * creates a formula where the variables in the subset are true, and all other
-     * neighbor variables are false. These formulas represent all possible ways the
-     * clue can be satisfied by painting certain neighbors.
+     * The ways are taken from {@link WindowPatterns}: the precomputed 9-bit
+     * patterns that paint {@code clue} cells of a window with this border shape,
+     * keeping only those that paint no cell outside the covered ones. Each
+     * pattern becomes a conjunction where the covered cells it paints are true
+     * and the other covered cells are false.
      * 
      * @param combinations The list of formulas to which the generated combinations
      *                     will be added. Each formula represents a possible way to
      *                     satisfy the clue.
-     * @param neighbors    A list of variables representing the neighbors of a cell.
-     *                     These variables are used to generate the combinations.
-     * @param clue         The clue number indicating how many neighbors should be
-     *                     painted. This is used to determine the size of the
-     *                     subsets to generate.
+     * @param window       The variables of the covered window cells, by window
+     *                     position, null where a cell is not covered.
+     * @param onBoard      The border mask of the window.
+     * @param clue         The number of covered cells that should be painted.
      */
 
-    private void generateCombinations(List<Formula> combinations, List<Variable> neighbors, int clue) {
-        List<List<Variable>> subsets = new ArrayList<>();
-        generateSubsets(neighbors, subsets, new ArrayList<>(), 0, clue);
-
-        // For each subset, create a formula where variables in the subset are true, and
-        // others are false
-        for (List<Variable> subset : subsets) {
-            List<Formula> terms = new ArrayList<>();
-            // Add variables in the subset as true
-            for (Variable trueVar : subset) {
-                terms.add(trueVar);
+    private void generateCombinations(List<Formula> combinations, Variable[] window, int onBoard, int clue) {
+        if (clue < 0 || clue > 9) {
+            return; // no way to satisfy the clue
+        }
+        long[] patterns = WindowPatterns.valid(clue, onBoard).clone();
+        for (int p = 0; p < 9; p++) {
+            if ((onBoard >> p & 1) != 0 && window[p] == null) {
+                WindowPatterns.restrict(patterns, 0, p, false); // only covered cells can still be painted
             }
-            // Add variables not in the subset as false
-            for (Variable neighbor : neighbors) {
-                if (!subset.contains(neighbor)) {
-                    terms.add(neighbor.negate());
+        }
+        WindowPatterns.forEach(patterns, 0, pattern -> {
+            List<Formula> terms = new ArrayList<>();
+            for (int p = 0; p < 9; p++) {
+                if (window[p] != null) {
+                    terms.add((pattern >> p & 1) != 0 ? window[p] : window[p].negate());
                 }
             }
             combinations.add(f.and(terms));
-        }
-    }
-
-    /**
-     * Generates all possible subsets of a given size from the list of neighbor
-     * variables.
-     * This method is used to explore all combinations of variables that could
-     * represent a solution
-     * based on a specific clue in the game. It recursively builds subsets of the
-     * specified size,
-     * adding them to a list of subsets once the desired size is reached.
-     *
-     * @param neighbors     The list of neighbor variables surrounding a specific
-     *                      cell.
-     * @param subsets       The list to store the generated subsets. Each subset is
-     *                      a list of variables.
-     * @param currentSubset The current subset being built in the recursive calls.
-     * @param start         The starting index in the neighbors list to add
-     *                      variables from.
-     * @param clue          The size of the subsets to generate, determined by the
-     *                      clue.
-     */
-
-    private void generateSubsets(List<Variable> neighbors, List<List<Variable>> subsets, List<Variable> currentSubset,
-            int start, int clue) {
-        if (currentSubset.size() == clue) {
-            subsets.add(new ArrayList<>(currentSubset));
-            return;
-        }
-        for (int i = start; i < neighbors.size(); i++) {
-            currentSubset.add(neighbors.get(i));
-            generateSubsets(neighbors, subsets, currentSubset, i + 1, clue);
-            currentSubset.remove(currentSubset.size() - 1);
-        }
+        });
     }
 
     /**
-     * Retrieves a list of logic variables representing the neighbors of a given
-     * cell on the board.
-     * Each variable corresponds to a possible state (painted or cleared) of a
-     * neighboring cell.
+     * Retrieves the logic variables of the covered cells in the 3x3 window of
+     * a cell, by window position.
      *
-     * @param i     the row index of the cell
-     * @param j     the column index of the cell
+     * @param cell  the flat index of the centre cell
      * @param board the game board containing cell states
-     * @return a list of {@link Variable} objects, each representing a neighbor of
-     *         the cell at (i, j)
-     *         that is currently in the covered state. The variables are named using
-     *         a convention
-     *         "P_x_y", where x and y are the coordinates of the neighbor.
+     * @return nine entries, position (dr + 1) * 3 + (dc + 1) holding the
+     *         variable of the cell at offset (dr, dc) if that cell is on the
+     *         board and covered, and null otherwise. The variables come from
+     *         the {@link CellVariables} table of the board.
      */
 
-    private List<Variable> getNeighborVariables(int i, int j, Game board) {
-        // This method should return a list of Variables for the neighbors of cell (i,
-        // j)
-        List<Variable> vars = new ArrayList<>();
-        for (int[] dir : new int[][] { { 0, 0 }, { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 },
-                { 1, 0 },
-                { 1, 1 } }) {
-            int ni = i + dir[0], nj = j + dir[1];
-            if (ni >= 0 && ni < board.size && nj >= 0 && nj < board.size) {
-                if (board.state[ni][nj] == board.COVERED) {
-                    vars.add(f.variable("P_" + ni + "_" + nj));
-                }
+    private Variable[] getWindowVariables(int cell, Game board) {
+        Variable[] vars = new Variable[9];
+        int onBoard = board.getNeighbourhood().mask(cell);
+        for (int p = 0; p < 9; p++) {
+            int neighbor = cell + (p / 3 - 1) * board.size + p % 3 - 1;
+            if ((onBoard >> p & 1) != 0 && board.getState(neighbor) == board.COVERED) {
+                vars[p] = variables.variable(neighbor);
             }
         }
         return vars;
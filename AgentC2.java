@@ -1,239 +1,368 @@
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
 
+import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
 import org.sat4j.minisat.SolverFactory;
-import java.io.ByteArrayInputStream;
-import java.io.InputStreamReader;
-import org.sat4j.core.VecInt;
-import java.io.BufferedReader;
 
 public class AgentC2 {
 
-    private List<List<String>> knowledgeBase = new ArrayList<>();
+    private static final int TIMEOUT = 3600; // 1 hour timeout, in seconds
 
-    private Map<String, Integer> varMap = new HashMap<>(); // Maps variables to integers
+    /**
+     * How the clues are given to the solver.
+     */
+    public enum Encoding {
+        /**
+         * Each clue expanded into plain clauses: C(n, n - k + 1) for at least
+         * k of the n covered cells and C(n, k + 1) for at most k. Kept for
+         * comparison.
+         */
+        CLAUSES,
+        /**
+         * Each clue as one native exactly-k cardinality constraint.
+         */
+        CARDINALITY
+    }
+
+    private final Encoding encoding;
+    private final boolean backbone; // apply only the cells every solution agrees on
+
+    private int[] varOf = new int[0]; // cell -> solver variable, 0 if the cell has none
+    private int[] cellOf = new int[1]; // solver variable -> cell
     private int varCount = 0; // Tracks the total number of unique variables
 
-    public void run(Game board, boolean verbose) {
-        for (int i = 0; i < board.size; i++) {
-            for (int j = 0; j < board.size; j++) {
-
-                int clue = board.board[i][j];
-                if (clue != -1) { // if it has a clue
-                    try {
-                        encodeClueToCNF(i, j, clue, board); // encode all possibilites for the clu
-                    } catch (Exception e) {
-                        System.out.println("Error encoding clue: " + e.getMessage());
-                    }
-                }
-            }
-        }
+    private final ConstraintBuffer constraints = new ConstraintBuffer(); // the encoding of the last run
+    private final int[] clause = new int[9]; // reused for every clause added
+    private Appendable dimacsOut; // optional copy of the clauses in DIMACS format
+    private SolverPortfolio portfolio; // null to use the default solver only
+    private boolean decompose; // solve every frontier component on its own
 
-        String dimacs = convertKnowledgeBaseToDIMACS();
-        System.out.println(dimacs);
-        System.out.println(varMap);
-        solveWithSAT4J(dimacs, board);
+    /**
+     * Creates an AgentC2 using cardinality constraints that applies the whole
+     * first model found.
+     */
+    public AgentC2() {
+        this(false);
     }
 
-    private List<List<Integer>> generateCombinations(int n, int k) {
-        List<List<Integer>> combinations = new ArrayList<>();
-        backtrack(combinations, new ArrayList<>(), 1, n, k);
-        return combinations;
+    /**
+     * @param backbone true to apply only the cells that have the same value in
+     *                 every solution (see {@link Backbone}), false to apply the
+     *                 whole first model found
+     */
+    public AgentC2(boolean backbone) {
+        this(Encoding.CARDINALITY, backbone);
     }
 
-    private void backtrack(List<List<Integer>> combinations, List<Integer> current, int start, int n, int k) {
-        if (k == 0) {
-            combinations.add(new ArrayList<>(current));
-            return;
-        }
-        for (int i = start; i <= n; i++) {
-            current.add(i);
-            backtrack(combinations, current, i + 1, n, k - 1);
-            current.remove(current.size() - 1);
+    /**
+     * @param encoding how the clues are given to the solver
+     * @param backbone true to apply only the cells that have the same value in
+     *                 every solution, false to apply the whole first model found
+     */
+    public AgentC2(Encoding encoding, boolean backbone) {
+        this.encoding = encoding;
+        this.backbone = backbone;
+    }
+
+    /**
+     * Writes the clauses of every following run, in DIMACS format, to the
+     * given output. The clauses go to the solver either way; the text is only
+     * built when an output is set. DIMACS has no cardinality constraints, so
+     * with {@link Encoding#CARDINALITY} each one is written as a comment line
+     * {@code c exactly <k> <literals> 0}.
+     *
+     * @param out where to write the clauses, or null to stop writing them
+     */
+    public void setDimacsOutput(Appendable out) {
+        this.dimacsOut = out;
+    }
+
+    /**
+     * Solves every following run with a {@link SolverPortfolio}: several SAT4J
+     * configurations on their own threads, keeping the first answer. With
+     * decomposition every component is raced on the same portfolio. Turning
+     * the portfolio off, or on again, closes the one in use, so call
+     * {@code setPortfolio(false)} once the agent is no longer needed.
+     *
+     * @param portfolio true to use the portfolio, false to use the default
+     *                  solver only
+     */
+    public void setPortfolio(boolean portfolio) {
+        if (this.portfolio != null) {
+            this.portfolio.close();
         }
+        this.portfolio = portfolio ? new SolverPortfolio(TIMEOUT) : null;
     }
 
-    private void encodeClueToCNF(int i, int j, int clue, Game board) {
-        List<String> cnfClauses = new ArrayList<>();
-        List<int[]> neighbors = getNeighborPositions(i, j, board); // Assume implementation from previous instructions
+    /**
+     * Solves every following run component by component (see
+     * {@link Frontier}), in parallel, each in its own solver, instead of as
+     * one instance for the whole board. No DIMACS is written in this mode.
+     *
+     * @param decompose true to split the board into components
+     */
+    public void setDecompose(boolean decompose) {
+        this.decompose = decompose;
+    }
 
-        // For simplicity, variables are named based on their indices (e.g., "1" for the
-        // first neighbor)
-        int variablesCount = neighbors.size();
-        // Generate CNF for "at least N"
-        if (clue > 0) {
-            List<List<Integer>> atLeastCombinations = generateCombinations(variablesCount, clue);
-            for (List<Integer> combination : atLeastCombinations) {
-                StringBuilder clause = new StringBuilder();
-                for (Integer idx : combination) {
-                    clause.append("D").append(neighbors.get(idx - 1)[0]).append("_").append(neighbors.get(idx - 1)[1])
-                            .append(" ");
-                }
-                cnfClauses.add(clause.toString().trim() + " 0"); // Append "0" to denote the end of a clause
+    /**
+     * Deduces cells with SAT4J. Before encoding, plain propagation (see
+     * {@link AgentB}) settles every clue whose covered cells must all be
+     * painted or all be cleared, and only the clues that still touch covered
+     * cells are encoded, each with its value minus the painted cells around
+     * it. The solver therefore only sees the part of the board that is still
+     * undecided.
+     *
+     * @param board   the game board, updated with the cells found
+     * @param verbose whether to print every cell that is updated
+     */
+    public void run(Game board, boolean verbose) {
+        new AgentB(false).run(board, verbose); // unit propagation on the clue counts
+
+        if (decompose) {
+            Frontier frontier = Frontier.of(board);
+            try {
+                Frontier.apply(frontier.solve((cells, clues) -> solveComponent(frontier, cells, clues, board)), board,
+                        verbose);
+            } catch (ExecutionException e) {
+                System.err.println("Error during SAT solving: " + e.getCause());
             }
+            return;
         }
 
-        // Generate CNF for "at most N"
-        // This is more complex and involves generating negations for combinations of
-        // size (N+1) to enforce an upper limit
-        if (clue < variablesCount) {
-            List<List<Integer>> atMostCombinations = generateCombinations(variablesCount, clue + 1);
-            for (List<Integer> combination : atMostCombinations) {
-                StringBuilder clause = new StringBuilder();
-                for (Integer idx : combination) {
-                    clause.append("-D").append(neighbors.get(idx - 1)[0]).append("_").append(neighbors.get(idx - 1)[1])
-                            .append(" ");
-                }
-                cnfClauses.add(clause.toString().trim() + " 0"); // Append "0" to denote the end of a clause
+        int cells = board.size * board.size;
+        if (varOf.length != cells) {
+            varOf = new int[cells];
+            cellOf = new int[cells + 1];
+        } else {
+            Arrays.fill(varOf, 0);
+        }
+        varCount = 0;
+        constraints.clear();
+
+        for (int cell = 0; cell < cells; cell++) {
+            int clue = board.getClue(cell);
+            if (clue == -1) {
+                continue;
+            }
+            if (board.coveredAround(cell) > 0) {
+                encodeClueToCNF(cell, clue, board); // encode all possibilites for the clue
+            } else if (board.paintedAround(cell) != clue) {
+                constraints.clause(clause, 0); // resolved around but not met: empty clause
             }
         }
+        writeDimacs();
 
-        System.out.println("cell: " + i + "," + j + ": " + cnfClauses);
-        knowledgeBase.add(cnfClauses);
+        solveWithSAT4J(board, verbose);
     }
 
-    private List<int[]> getNeighborPositions(int i, int j, Game board) {
-        List<int[]> neighbors = new ArrayList<>();
+    /**
+     * Adds the constraints of one clue to the solver, over the covered cells
+     * of its window: exactly (clue - painted) of them are painted. With the
+     * clause encoding each bound is written as one clause per combination of
+     * cells.
+     */
+    private void encodeClueToCNF(int cell, int clue, Game board) {
+        int[] neighbors = getNeighborVariables(cell, board);
+        int needed = clue - board.paintedAround(cell); // painted cells already count
+        encodeExactly(constraints, clause, neighbors, neighbors.length, needed);
+    }
 
-        // Define the relative positions of all possible neighbors
-        int[][] directions = {
-                { -1, -1 }, // top-left
-                { -1, 0 }, // top
-                { -1, 1 }, // top-right
-                { 0, -1 }, // left
-                { 0, 0 }, // current cell
-                { 0, 1 }, // right
-                { 1, -1 }, // bottom-left
-                { 1, 0 }, // bottom
-                { 1, 1 } // bottom-right
-        };
+    /**
+     * Adds "exactly {@code needed} of the first {@code variablesCount}
+     * variables are true" to a buffer, in the encoding of this agent. Only
+     * touches its arguments, so components can be encoded in parallel.
+     */
+    private void encodeExactly(ConstraintBuffer out, int[] scratch, int[] vars, int variablesCount, int needed) {
+        if (needed < 0 || needed > variablesCount) {
+            out.clause(scratch, 0); // the clue can no longer be met: empty clause
+            return;
+        }
 
-        // Check each possible direction to ensure it's within the grid bounds
-        for (int[] dir : directions) {
-            int neighborI = i + dir[0];
-            int neighborJ = j + dir[1];
+        if (encoding == Encoding.CARDINALITY) {
+            out.exactly(vars, variablesCount, needed);
+            return;
+        }
 
-            // Check if the neighbor position is within the bounds of the board
-            if (neighborI >= 0 && neighborI < board.size && neighborJ >= 0 && neighborJ < board.size) {
-                if (board.state[neighborI][neighborJ] == board.COVERED) { // check if cell is covered
-                    neighbors.add(new int[] { neighborI, neighborJ });
-                }
-            }
+        // Generate CNF for "at least N"
+        if (needed > 0) {
+            addCombinations(out, scratch, vars, variablesCount, variablesCount - needed + 1, 1, 0, 0);
         }
 
-        return neighbors;
+        // Generate CNF for "at most N"
+        // Negations for every combination of size (N+1) enforce the upper limit
+        if (needed < variablesCount) {
+            addCombinations(out, scratch, vars, variablesCount, needed + 1, -1, 0, 0);
+        }
     }
 
-    private String convertKnowledgeBaseToDIMACS() {
-        StringBuilder dimacs = new StringBuilder();
-        int clauseCount = knowledgeBase.size();
-        // Reset varMap and varCount for each conversion
-        varMap.clear();
-        varCount = 0;
-
-        // Unique integer assignment for variables
-        for (List<String> clause : knowledgeBase) {
-            for (String literal : clause) {
-                String var = literal.startsWith("-") ? literal.substring(1) : literal;
-                if (!varMap.containsKey(var)) {
-                    varMap.put(var, ++varCount);
-                }
-            }
+    /**
+     * Adds one clause for every combination of {@code size} of the first
+     * {@code count} variables, with the given sign.
+     */
+    private static void addCombinations(ConstraintBuffer out, int[] clause, int[] vars, int count, int size,
+            int sign, int depth, int start) {
+        if (depth == size) {
+            out.clause(clause, size);
+            return;
         }
+        for (int i = start; i <= count - (size - depth); i++) {
+            clause[depth] = sign * vars[i];
+            addCombinations(out, clause, vars, count, size, sign, depth + 1, i + 1);
+        }
+    }
 
-        // DIMACS preamble
-        dimacs.append("p cnf ").append(varCount).append(" ").append(clauseCount).append("\n");
-
-        // Convert clauses to DIMACS
-        for (List<String> clause : knowledgeBase) {
-            for (String literal : clause) {
-                int varNum = varMap.get(literal.startsWith("-") ? literal.substring(1) : literal);
-                dimacs.append(literal.startsWith("-") ? "-" : "").append(varNum).append(" ");
+    private int[] getNeighborVariables(int cell, Game board) {
+        // The window offsets (current cell included) are precomputed with the
+        // board bounds already applied
+        int[] window = board.getNeighbourhood().window(cell);
+        int[] vars = new int[window.length];
+        int count = 0;
+        for (int offset : window) {
+            int neighbor = cell + offset;
+            if (board.getState(neighbor) == board.COVERED) { // check if cell is covered
+                vars[count++] = variable(neighbor);
             }
-            dimacs.append("0\n"); // Clause end
         }
-
-        return dimacs.toString();
+        return Arrays.copyOf(vars, count);
     }
 
-    public void solveWithSAT4J(String dimacs, Game board) {
-        ISolver solver = SolverFactory.newDefault();
-        solver.setTimeout(3600); // 1 hour timeout
+    private int variable(int cell) {
+        if (varOf[cell] == 0) {
+            varOf[cell] = ++varCount;
+            cellOf[varCount] = cell;
+        }
+        return varOf[cell];
+    }
 
-        try (ByteArrayInputStream in = new ByteArrayInputStream(dimacs.getBytes());
-                BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+    private void writeDimacs() {
+        if (dimacsOut == null) {
+            return;
+        }
+        try {
+            constraints.writeDimacs(dimacsOut);
+        } catch (IOException e) {
+            System.err.println("Error writing DIMACS: " + e.getMessage());
+        }
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("p") || line.startsWith("c")) {
-                    // Skip preamble and comments
-                    continue;
-                }
-                VecInt clause = new VecInt();
-                for (String part : line.split("\\s")) {
-                    int literal = Integer.parseInt(part);
-                    if (literal == 0) {
-                        // 0 denotes the end of a clause in DIMACS format
-                        break;
-                    }
-                    clause.push(literal);
-                }
-                solver.addClause(clause);
+    private void solveWithSAT4J(Game board, boolean verbose) {
+        try {
+            ISolver solver;
+            boolean satisfiable;
+            if (portfolio != null) {
+                SolverPortfolio.Result result = portfolio.solve(constraints);
+                solver = result.solver; // keeps its learned clauses for the backbone probes
+                satisfiable = result.satisfiable;
+            } else {
+                solver = SolverFactory.newDefault();
+                solver.setTimeout(TIMEOUT);
+                satisfiable = load(solver) && solver.isSatisfiable();
             }
 
-            if (solver.isSatisfiable()) {
-                System.out.println("Satisfiable");
-                int[] model = solver.model();
-                processModel(model, board); // Ensure this method is correctly implemented to update the board
+            if (!satisfiable) {
+                Frontier.apply(null, board, verbose);
+            } else if (backbone) {
+                int[] candidates = new int[varCount];
+                for (int i = 0; i < varCount; i++) {
+                    candidates[i] = i + 1;
+                }
+                // a partial model: only the forced cells
+                Frontier.apply(toMoves(Backbone.of(solver, new int[0], candidates)), board, verbose);
             } else {
-                System.out.println("Unsatisfiable");
+                Frontier.apply(toMoves(solver.model()), board, verbose);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             System.err.println("Error during SAT solving: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private void processModel(int[] model, Game board) {
-        System.out.println("Model: " + Arrays.toString(model));
-        // Inverting varMap to map variable IDs back to their identifiers
-        Map<Integer, String> reverseVarMap = new HashMap<>();
-        for (Map.Entry<String, Integer> entry : varMap.entrySet()) {
-            reverseVarMap.put(entry.getValue(), entry.getKey());
+    private boolean load(ISolver solver) {
+        try {
+            constraints.addTo(solver);
+            return true;
+        } catch (ContradictionException e) {
+            return false; // trivially unsatisfiable
         }
+    }
 
-        for (int varId : model) {
-            boolean isTrue = varId > 0;
-            String varKey = reverseVarMap.get(Math.abs(varId));
-            if (varKey != null) {
-                // Ensure we only deal with the variable identifier part
-                String[] keyParts = varKey.split(" ");
-                if (keyParts.length > 0) {
-                    varKey = keyParts[0]; // Use only the first part, ignoring anything after a space
-                }
+    /**
+     * Solves one component of the frontier in its own buffer and solver, or
+     * on the portfolio, with variable i + 1 standing for cells[i].
+     *
+     * @return the moves for the cells of the component, as for
+     *         {@link Frontier.ComponentSolver}
+     */
+    private int[] solveComponent(Frontier frontier, int[] cells, int[] clues, Game board)
+            throws TimeoutException, InterruptedException {
+        ConstraintBuffer buffer = new ConstraintBuffer();
+        int[] window = new int[9];
+        int[] scratch = new int[9];
+        for (int clue : clues) {
+            int count = frontier.windowVariables(clue, cells, window);
+            encodeExactly(buffer, scratch, window, count, board.getClue(clue) - board.paintedAround(clue));
+        }
 
-                if (varKey.startsWith("D")) {
-                    try {
-                        String[] parts = varKey.substring(1).split("_"); // Remove 'D' and split
-                        int x = Integer.parseInt(parts[0]);
-                        int y = Integer.parseInt(parts[1]);
-                        // Update the board based on the truth value of the variable
-                        if (isTrue) {
-                            board.state[x][y] = board.PAINTED;
-                            System.out.println("Painting cell [" + x + ", " + y + "]");
-                        } else {
-                            board.state[x][y] = board.CLEARED;
-                            System.out.println("Clearing cell [" + x + ", " + y + "]");
-                        }
-                    } catch (NumberFormatException e) {
-                        System.err.println("Error parsing cell coordinates from key: " + varKey);
-                    }
-                }
+        ISolver solver;
+        if (portfolio != null) {
+            SolverPortfolio.Result result = portfolio.solve(buffer);
+            if (!result.satisfiable) {
+                return null;
+            }
+            solver = result.solver;
+        } else {
+            solver = SolverFactory.newDefault();
+            solver.setTimeout(TIMEOUT);
+            try {
+                buffer.addTo(solver);
+            } catch (ContradictionException e) {
+                return null;
+            }
+        }
+        int[] candidates = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            candidates[i] = i + 1;
+        }
+        int[] moves;
+        if (backbone) {
+            moves = Backbone.of(solver, new int[0], candidates);
+        } else if (solver.isSatisfiable()) {
+            moves = new int[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                moves[i] = solver.model(i + 1) ? i + 1 : -(i + 1);
+            }
+        } else {
+            moves = null;
+        }
+        return Frontier.toCells(moves, cells);
+    }
+
+    /**
+     * Turns solver literals over the variables of the whole board into moves.
+     *
+     * @param literals the literals, or null
+     * @return the moves, or null if the literals were null
+     */
+    private int[] toMoves(int[] literals) {
+        if (literals == null) {
+            return null;
+        }
+        int[] moves = new int[literals.length];
+        int count = 0;
+        for (int literal : literals) {
+            int var = Math.abs(literal);
+            if (var == 0 || var > varCount) {
+                continue;
             }
+            int cell = cellOf[var];
+            moves[count++] = literal > 0 ? cell + 1 : -(cell + 1);
         }
+        return Arrays.copyOf(moves, count);
     }
 }
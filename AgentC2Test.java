@@ -0,0 +1,105 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class AgentC2Test {
+
+    private static final String UNSOLVABLE = "No solution found, or puzzle is unsolvable under current constraints.";
+
+    @Test
+    public void testEncodingsForceTheSameCells() throws Exception {
+        assertSameBackbone(PuzzleFixtures.NESTED);
+        for (String spec : PuzzleFixtures.generatedSpecs(8)) {
+            assertSameBackbone(spec);
+        }
+    }
+
+    @Test
+    public void testModelsAgreeWithTheBackbone() throws Exception {
+        assertModelsAgree(PuzzleFixtures.NESTED);
+        for (String spec : PuzzleFixtures.generatedSpecs(8)) {
+            assertModelsAgree(spec);
+        }
+    }
+
+    @Test
+    public void testContradictionLeavesTheBoard() {
+        Game propagated = PuzzleFixtures.board(PuzzleFixtures.CONTRADICTION);
+        new AgentB(false).run(propagated, false);
+        for (AgentC2 agent : agents(true)) {
+            assertUnsolvable(agent, propagated);
+        }
+        for (AgentC2 agent : agents(false)) {
+            assertUnsolvable(agent, propagated);
+        }
+    }
+
+    /**
+     * The agents under test: both encodings on one instance, and the
+     * cardinality constraints split into components.
+     */
+    private static AgentC2[] agents(boolean backbone) {
+        AgentC2 decomposed = new AgentC2(AgentC2.Encoding.CARDINALITY, backbone);
+        decomposed.setDecompose(true);
+        return new AgentC2[] { new AgentC2(AgentC2.Encoding.CARDINALITY, backbone),
+                new AgentC2(AgentC2.Encoding.CLAUSES, backbone), decomposed };
+    }
+
+    /**
+     * Checks that every encoding forces the same cells as the backbone of
+     * Agent C1.
+     */
+    private static void assertSameBackbone(String spec) {
+        Game expected = PuzzleFixtures.board(spec);
+        new AgentC1(AgentC1.Encoding.SEQUENTIAL_COUNTER, true).run(expected, false);
+        for (AgentC2 agent : agents(true)) {
+            Game board = PuzzleFixtures.board(spec);
+            agent.run(board, false);
+            assertArrayEquals("Every encoding should force the same cells of " + spec, expected.getStateMatrix(),
+                    board.getStateMatrix());
+        }
+    }
+
+    private static void assertModelsAgree(String spec) {
+        Game forced = PuzzleFixtures.board(spec);
+        new AgentC2(true).run(forced, false);
+        for (AgentC2 agent : agents(false)) {
+            Game board = PuzzleFixtures.board(spec);
+            agent.run(board, false);
+            assertTrue("A model should meet every clue of " + spec, PuzzleFixtures.isConsistent(board));
+            for (int cell = 0; cell < board.size * board.size; cell++) {
+                if (forced.getState(cell) != forced.COVERED) {
+                    assertEquals("A model should set cell " + cell + " of " + spec + " as forced",
+                            forced.getState(cell), board.getState(cell));
+                } else if (forced.isNextToClue(cell)) {
+                    assertTrue("A model should set every cell a clue sees", board.getState(cell) != board.COVERED);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an agent on a copy of a board left by plain propagation and checks
+     * that it reports the board as unsolvable without moving.
+     */
+    private static void assertUnsolvable(AgentC2 agent, Game propagated) {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.CONTRADICTION);
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream saved = System.err;
+        System.setErr(new PrintStream(err, true));
+        try {
+            agent.run(board, false);
+        } finally {
+            System.setErr(saved);
+        }
+        assertEquals(UNSOLVABLE, new String(err.toByteArray(), StandardCharsets.US_ASCII).trim());
+        assertArrayEquals("Only plain propagation should move", propagated.getStateMatrix(),
+                board.getStateMatrix());
+    }
+}
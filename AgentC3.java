@@ -0,0 +1,84 @@
+import java.util.concurrent.ExecutionException;
+
+public class AgentC3 {
+
+    private final boolean backbone; // apply only the cells every solution agrees on
+
+    /**
+     * Creates an AgentC3 that applies only the cells every solution agrees
+     * on.
+     */
+    public AgentC3() {
+        this(true);
+    }
+
+    /**
+     * @param backbone true to apply only the cells that have the same value in
+     *                 every solution (see {@link Backbone}), false to apply the
+     *                 whole first model found
+     */
+    public AgentC3(boolean backbone) {
+        this.backbone = backbone;
+    }
+
+    /**
+     * Deduces cells with {@link MosaicSolver}, the conflict-driven solver
+     * built for Mosaic clues. Plain propagation (see {@link AgentB}) runs
+     * first, then pairwise pattern propagation (see {@link PatternEngine}),
+     * which can also prove the board unsolvable on its own. The covered cells
+     * still next to a clue are then split into components that share no clue
+     * (see {@link Frontier}), and each component is solved in its own solver,
+     * with every clue posted as one exactly-k constraint over its covered
+     * cells.
+     *
+     * @param board   the game board, updated with the cells found
+     * @param verbose whether to print every cell that is updated
+     */
+    public void run(Game board, boolean verbose) {
+        new AgentB(false).run(board, verbose); // unit propagation on the clue counts
+        if (!new PatternEngine().run(board, verbose)) { // pairs of overlapping clues
+            Frontier.apply(null, board, verbose);
+            return;
+        }
+
+        Frontier frontier = Frontier.of(board);
+        try {
+            Frontier.apply(frontier.solve((cells, clues) -> solveComponent(frontier, cells, clues, board)), board,
+                    verbose);
+        } catch (ExecutionException e) {
+            System.err.println("Error during SAT solving: " + e.getCause());
+        }
+    }
+
+    /**
+     * Solves one component, with variable i + 1 standing for cells[i].
+     *
+     * @return the moves for the cells of the component, as for
+     *         {@link Frontier.ComponentSolver}
+     */
+    private int[] solveComponent(Frontier frontier, int[] cells, int[] clues, Game board) {
+        MosaicSolver solver = new MosaicSolver(cells.length);
+        int[] window = new int[9];
+        for (int clue : clues) {
+            int count = frontier.windowVariables(clue, cells, window);
+            solver.exactly(window, count, board.getClue(clue) - board.paintedAround(clue));
+        }
+
+        int[] moves;
+        if (backbone) {
+            int[] candidates = new int[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                candidates[i] = i + 1;
+            }
+            moves = Backbone.of(solver, new int[0], candidates);
+        } else if (solver.isSatisfiable()) {
+            moves = new int[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                moves[i] = solver.model(i + 1) ? i + 1 : -(i + 1);
+            }
+        } else {
+            moves = null;
+        }
+        return Frontier.toCells(moves, cells);
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AgentD {
+
+    /**
+     * Deduces cells by dynamic programming over row profiles (see
+     * {@link ProfileSolver}) instead of SAT search. Plain propagation (see
+     * {@link AgentB}) runs first; the covered cells still next to a clue are
+     * then split into components (see {@link Frontier}), and each component
+     * is swept along its long side, applying the cells that every solution
+     * sets the same way. Components whose profile grows too wide are left to
+     * {@link AgentC3}.
+     *
+     * @param board   the game board, updated with the cells found
+     * @param verbose whether to print every cell that is updated and the
+     *                number of solutions of each component
+     */
+    public void run(Game board, boolean verbose) {
+        new AgentB(false).run(board, verbose); // unit propagation on the clue counts
+
+        Frontier frontier = Frontier.of(board);
+        AtomicBoolean tooWide = new AtomicBoolean();
+        try {
+            Frontier.apply(frontier.solve((cells, clues) -> {
+                ProfileSolver.Result result = ProfileSolver.solve(frontier, cells, clues, board);
+                if (result == null) {
+                    tooWide.set(true);
+                    return new int[0];
+                }
+                if (verbose) {
+                    System.out.println("Component of " + cells.length + " cells has " + result.solutions
+                            + " solutions");
+                }
+                return result.forced();
+            }), board, verbose);
+        } catch (ExecutionException e) {
+            System.err.println("Error during profile solving: " + e.getCause());
+            return;
+        }
+        if (tooWide.get()) {
+            new AgentC3().run(board, verbose);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.solvers.SATSolver;
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Backbone.java
+ *
+ * Computes the backbone of a formula over a set of candidate variables: the
+ * literals that hold in every model, i.e. the cells the clues actually force.
+ * The SAT agents apply only these instead of a whole model, so they never
+ * commit a cell that some other solution would set differently.
+ *
+ * Every version works on one incremental solver. The first model gives every
+ * candidate its only possible forced value; each candidate still open is then
+ * probed by solving with the opposite value as an extra assumption. An
+ * unsatisfiable probe proves the literal, which is kept as an assumption for
+ * the following probes; a satisfiable one returns a new model, and every
+ * candidate that model sets the other way is dropped without a probe of its
+ * own. Each probe either fixes or drops at least one candidate, so the cost is
+ * bounded by the number of candidates and is usually a small multiple of one
+ * solve.
+ */
+public final class Backbone {
+
+    private Backbone() {
+    }
+
+    /**
+     * Backbone over a LogicNG solver.
+     *
+     * @param solver      the solver holding the clauses
+     * @param assumptions literals assumed in every solve (not reported)
+     * @param candidates  the variables to test
+     * @return the forced literals of the candidates, or null if the clauses
+     *         are unsatisfiable under the assumptions
+     */
+    public static List<Literal> of(SATSolver solver, List<Literal> assumptions, List<Variable> candidates) {
+        List<Literal> probe = new ArrayList<>(assumptions);
+        if (solver.sat(probe) != Tristate.TRUE) {
+            return null;
+        }
+        Assignment model = solver.model();
+        Literal[] open = new Literal[candidates.size()];
+        int count = 0;
+        for (Variable candidate : candidates) {
+            open[count++] = model.evaluateLit(candidate) ? candidate : candidate.negate();
+        }
+
+        List<Literal> forced = new ArrayList<>();
+        int next = 0;
+        while (next < count) {
+            Literal candidate = open[next++];
+            probe.add(candidate.negate());
+            Tristate result = solver.sat(probe);
+            probe.remove(probe.size() - 1);
+            if (result == Tristate.FALSE) {
+                forced.add(candidate);
+                probe.add(candidate); // proven, so it can only help the next probes
+            } else if (result == Tristate.TRUE) {
+                // keep only the candidates the new model agrees with
+                model = solver.model();
+                int kept = next;
+                for (int i = next; i < count; i++) {
+                    if (model.evaluateLit(open[i])) {
+                        open[kept++] = open[i];
+                    }
+                }
+                count = kept;
+            }
+        }
+        return forced;
+    }
+
+    /**
+     * Backbone over a SAT4J solver, with variables and literals as DIMACS
+     * integers.
+     *
+     * @param solver      the solver holding the clauses
+     * @param assumptions literals assumed in every solve (not reported)
+     * @param candidates  the variables to test
+     * @return the forced literals of the candidates, or null if the clauses
+     *         are unsatisfiable under the assumptions
+     * @throws TimeoutException if the solver times out
+     */
+    public static int[] of(ISolver solver, int[] assumptions, int[] candidates) throws TimeoutException {
+        IVecInt probe = new VecInt(assumptions.length + candidates.length + 1);
+        for (int literal : assumptions) {
+            probe.push(literal);
+        }
+        if (!solver.isSatisfiable(probe)) {
+            return null;
+        }
+        int[] open = new int[candidates.length];
+        int count = 0;
+        for (int candidate : candidates) {
+            open[count++] = solver.model(candidate) ? candidate : -candidate;
+        }
+
+        int[] forced = new int[candidates.length];
+        int found = 0;
+        int next = 0;
+        while (next < count) {
+            int candidate = open[next++];
+            probe.push(-candidate);
+            boolean satisfiable = solver.isSatisfiable(probe);
+            probe.pop();
+            if (!satisfiable) {
+                forced[found++] = candidate;
+                probe.push(candidate); // proven, so it can only help the next probes
+            } else {
+                // keep only the candidates the new model agrees with
+                int kept = next;
+                for (int i = next; i < count; i++) {
+                    if (solver.model(Math.abs(open[i])) == open[i] > 0) {
+                        open[kept++] = open[i];
+                    }
+                }
+                count = kept;
+            }
+        }
+        return Arrays.copyOf(forced, found);
+    }
+
+    /**
+     * Backbone over a {@link MosaicSolver}.
+     *
+     * @param solver      the solver holding the clues
+     * @param assumptions DIMACS literals assumed in every solve (not reported)
+     * @param candidates  the variables to test
+     * @return the forced literals of the candidates, or null if the clues are
+     *         unsatisfiable under the assumptions
+     */
+    public static int[] of(MosaicSolver solver, int[] assumptions, int[] candidates) {
+        int[] probe = Arrays.copyOf(assumptions, assumptions.length + candidates.length + 1);
+        int size = assumptions.length;
+        if (!solver.isSatisfiable(probe, size)) {
+            return null;
+        }
+        int[] open = new int[candidates.length];
+        int count = 0;
+        for (int candidate : candidates) {
+            open[count++] = solver.model(candidate) ? candidate : -candidate;
+        }
+
+        int[] forced = new int[candidates.length];
+        int found = 0;
+        int next = 0;
+        while (next < count) {
+            int candidate = open[next++];
+            probe[size] = -candidate;
+            if (!solver.isSatisfiable(probe, size + 1)) {
+                forced[found++] = candidate;
+                probe[size++] = candidate; // proven, so it can only help the next probes
+            } else {
+                // keep only the candidates the new model agrees with
+                int kept = next;
+                for (int i = next; i < count; i++) {
+                    if (solver.model(Math.abs(open[i])) == open[i] > 0) {
+                        open[kept++] = open[i];
+                    }
+                }
+                count = kept;
+            }
+        }
+        return Arrays.copyOf(forced, found);
+    }
+}
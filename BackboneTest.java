@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.logicng.formulas.CType;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+
+public class BackboneTest {
+
+    @Test
+    public void testOverloadsAgree() throws Exception {
+        assertArrayEquals("Only the cells outside the top-left window are forced",
+                new int[] { -9, -8, -7, -6, -3 }, backbones(PuzzleFixtures.board(PuzzleFixtures.NESTED), 0));
+        for (Game board : PuzzleFixtures.generated(8)) {
+            backbones(board, 0);
+        }
+    }
+
+    @Test
+    public void testOverloadsAgreeUnderAssumption() throws Exception {
+        // painting the top-left cell meets both 1s, so every other cell is cleared
+        assertArrayEquals(new int[] { -9, -8, -7, -6, -5, -4, -3, -2 },
+                backbones(PuzzleFixtures.board(PuzzleFixtures.NESTED), 1));
+        for (Game board : PuzzleFixtures.generated(8)) {
+            backbones(board, 1);
+        }
+    }
+
+    @Test
+    public void testContradictionHasNoBackbone() throws Exception {
+        assertNull(backbones(PuzzleFixtures.board(PuzzleFixtures.CONTRADICTION), 0));
+    }
+
+    /**
+     * Encodes the clues of a board over its covered cells, variable cell + 1,
+     * for LogicNG, SAT4J and {@link MosaicSolver}, and checks that the three
+     * backbones over the covered cells next to a clue are the same.
+     *
+     * @param assumption a DIMACS literal assumed in every solve, or 0 for none
+     * @return the backbone, sorted, or null if the clues are unsatisfiable
+     */
+    private static int[] backbones(Game board, int assumption) throws Exception {
+        int cells = board.size * board.size;
+        FormulaFactory f = new FormulaFactory();
+        SATSolver miniSat = MiniSat.miniSat(f);
+        ISolver sat4j = SolverFactory.newDefault();
+        sat4j.newVar(cells);
+        MosaicSolver mosaic = new MosaicSolver(cells);
+        boolean satisfiable = true;
+
+        int[] window = new int[9];
+        for (int clue = 0; clue < cells; clue++) {
+            if (board.getClue(clue) == -1) {
+                continue;
+            }
+            int count = 0;
+            for (int offset : board.getNeighbourhood().window(clue)) {
+                if (board.getState(clue + offset) == board.COVERED) {
+                    window[count++] = clue + offset + 1;
+                }
+            }
+            int needed = board.getClue(clue) - board.paintedAround(clue);
+            List<Variable> vars = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                vars.add(f.variable("c" + window[i]));
+            }
+            miniSat.add(f.cc(CType.EQ, needed, vars));
+            try {
+                sat4j.addExactly(new VecInt(Arrays.copyOf(window, count)), needed);
+            } catch (ContradictionException e) {
+                satisfiable = false;
+            }
+            mosaic.exactly(window, count, needed);
+        }
+
+        List<Variable> candidates = new ArrayList<>();
+        int[] candidateVars = new int[cells];
+        int candidateCount = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (board.getState(cell) == board.COVERED && board.isNextToClue(cell)
+                    && cell + 1 != Math.abs(assumption)) {
+                candidates.add(f.variable("c" + (cell + 1)));
+                candidateVars[candidateCount++] = cell + 1;
+            }
+        }
+        candidateVars = Arrays.copyOf(candidateVars, candidateCount);
+        int[] assumptions = assumption == 0 ? new int[0] : new int[] { assumption };
+        List<Literal> assumed = assumption == 0 ? Collections.emptyList()
+                : Collections.singletonList(f.literal("c" + Math.abs(assumption), assumption > 0));
+
+        int[] logicNG = sorted(Backbone.of(miniSat, assumed, candidates));
+        int[] fromSat4j = satisfiable ? sorted(Backbone.of(sat4j, assumptions, candidateVars)) : null;
+        int[] fromMosaic = sorted(Backbone.of(mosaic, assumptions, candidateVars));
+        assertArrayEquals("LogicNG and SAT4J should force the same cells", logicNG, fromSat4j);
+        assertArrayEquals("LogicNG and MosaicSolver should force the same cells", logicNG, fromMosaic);
+        return logicNG;
+    }
+
+    private static int[] sorted(List<Literal> forced) {
+        if (forced == null) {
+            return null;
+        }
+        int[] literals = new int[forced.size()];
+        for (int i = 0; i < literals.length; i++) {
+            Literal literal = forced.get(i);
+            int var = Integer.parseInt(literal.name().substring(1));
+            literals[i] = literal.phase() ? var : -var;
+        }
+        return sorted(literals);
+    }
+
+    private static int[] sorted(int[] forced) {
+        if (forced != null) {
+            Arrays.sort(forced);
+        }
+        return forced;
+    }
+}
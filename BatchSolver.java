@@ -0,0 +1,232 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BatchSolver.java
+ *
+ * Solves a stream of game specs, one per line, on a pool of worker threads so
+ * that a whole corpus can be played in a single JVM. Every line gets its own
+ * {@link Game} and agents (through {@link P1main#play}), and produces one
+ * result line:
+ *
+ * <pre>
+ * &lt;line&gt; &lt;status&gt; &lt;millis&gt; &lt;resolved&gt;
+ * &lt;line&gt; error &lt;message&gt;
+ * </pre>
+ *
+ * where status is the final AgentA code and resolved is the number of cells
+ * uncovered by the agents. Results are written in input order (default) or as
+ * soon as they complete. Only a bounded number of lines is read ahead of the
+ * slowest unfinished one, so memory stays flat for arbitrarily long inputs.
+ * Boards already played in this run, up to rotation and reflection, are
+ * answered from a {@link SolutionCache} without running the agents again.
+ */
+public class BatchSolver {
+
+    static final int READ_AHEAD = 4; // pending lines per worker
+    private static final long CACHE_CELLS = 1L << 24; // default cache size, in cells
+
+    private final String agent;
+    private final int threads;
+    private final boolean inputOrder;
+    private final SolutionCache cache; // null when caching is off
+    private boolean portfolio; // Agent C2 solves on a SolverPortfolio
+
+    /**
+     * @param agent      the agent to play every puzzle with, as for P1main
+     * @param threads    the number of worker threads
+     * @param inputOrder true to write results in input order, false to write
+     *                   them in completion order
+     */
+    public BatchSolver(String agent, int threads, boolean inputOrder) {
+        this(agent, threads, inputOrder, CACHE_CELLS);
+    }
+
+    /**
+     * @param agent      the agent to play every puzzle with, as for P1main
+     * @param threads    the number of worker threads
+     * @param inputOrder true to write results in input order, false to write
+     *                   them in completion order
+     * @param cacheCells the number of cells the solution cache may hold, 0 to
+     *                   play every puzzle
+     */
+    public BatchSolver(String agent, int threads, boolean inputOrder, long cacheCells) {
+        this.agent = agent;
+        this.threads = threads;
+        this.inputOrder = inputOrder;
+        this.cache = cacheCells > 0 ? new SolutionCache(cacheCells) : null;
+    }
+
+    /**
+     * Plays every following puzzle with Agent C2 solving on a
+     * {@link SolverPortfolio}, one per puzzle, as for
+     * {@link P1main#play(String, Game, boolean, boolean)}.
+     *
+     * @param portfolio true to use the portfolio, false to use the default
+     *                  solver only
+     */
+    public void setPortfolio(boolean portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Command line entry used by P1main: {@code [<file>|-] [--threads=N]
+     * [--order=input|completion] [--cache=CELLS] [--portfolio]}. Reads stdin
+     * when no file is given.
+     *
+     * @param agent the agent to play with
+     * @param args  the remaining arguments
+     * @return the process exit code
+     */
+    static int main(String agent, String[] args) {
+        String file = "-";
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean inputOrder = true;
+        long cacheCells = CACHE_CELLS;
+        boolean portfolio = false;
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--order=completion")) {
+                inputOrder = false;
+            } else if (arg.equals("--order=input")) {
+                inputOrder = true;
+            } else if (arg.startsWith("--cache=")) {
+                cacheCells = Long.parseLong(arg.substring("--cache=".length()));
+            } else if (arg.equals("--portfolio")) {
+                portfolio = true;
+            } else {
+                file = arg;
+            }
+        }
+        if (threads < 1) {
+            System.err.println("--threads must be at least 1");
+            return 1;
+        }
+
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.US_ASCII)) {
+            BatchSolver solver = new BatchSolver(agent, threads, inputOrder, cacheCells);
+            solver.setPortfolio(portfolio);
+            solver.run(in, System.out);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error reading puzzles: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Solves every non-blank line of the input and writes one result line per
+     * puzzle.
+     *
+     * @param in  the puzzle specs, one per line
+     * @param out where the result lines are written
+     * @throws IOException          if reading the input fails
+     * @throws InterruptedException if interrupted while waiting for results
+     */
+    public void run(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<String> completed = new ExecutorCompletionService<>(pool); // completion order
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>(); // input order
+        Map<Future<String>, Integer> lines = new IdentityHashMap<>(); // line number of every unfinished puzzle
+        int maxPending = threads * READ_AHEAD;
+        int inFlight = 0;
+
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String spec = line;
+                int number = lineNumber;
+                Callable<String> task = () -> solve(number, spec);
+                Future<String> future = inputOrder ? pool.submit(task) : completed.submit(task);
+                if (inputOrder) {
+                    pending.add(future);
+                }
+                lines.put(future, number);
+                inFlight++;
+                if (inFlight == maxPending) {
+                    // wait for the oldest (or fastest) puzzle before reading on
+                    out.println(next(pending, completed, lines));
+                    inFlight--;
+                }
+            }
+            while (inFlight > 0) {
+                out.println(next(pending, completed, lines));
+                inFlight--;
+            }
+            out.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private String next(ArrayDeque<Future<String>> pending, CompletionService<String> completed,
+            Map<Future<String>, Integer> lines) throws InterruptedException {
+        Future<String> result = inputOrder ? pending.poll() : completed.take();
+        int lineNumber = lines.remove(result);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            return lineNumber + " error " + e.getCause(); // solve() reports its own exceptions, not errors
+        }
+    }
+
+    /**
+     * Plays one puzzle.
+     *
+     * @param lineNumber the line of the spec in the input, from 1
+     * @param spec       the game spec
+     * @return the result line
+     */
+    String solve(int lineNumber, String spec) {
+        Game board = new Game();
+        try {
+            PuzzleParser.parse(spec, board);
+        } catch (PuzzleFormatException e) {
+            return lineNumber + " error " + e.getMessage();
+        }
+        try {
+            int coveredBefore = board.getCoveredCount();
+            long start = System.nanoTime();
+            SolutionCache.Key key = cache == null ? null : cache.key(agent, board);
+            int output;
+            if (key != null && cache.restore(key, board)) {
+                output = new AgentA().run(board, false); // seen before: only the status is left
+            } else {
+                output = P1main.play(agent, board, false, portfolio);
+                if (key != null) {
+                    cache.store(key, board);
+                }
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return lineNumber + " " + output + " " + millis + " " + (coveredBefore - board.getCoveredCount());
+        } catch (RuntimeException e) {
+            return lineNumber + " error " + e;
+        }
+    }
+}
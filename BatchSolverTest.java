@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchSolverTest {
+
+    @Test
+    public void testInputOrderSkipsBlankLines() throws Exception {
+        String input = PuzzleFixtures.NESTED + "\n\n" + PuzzleFixtures.CONTRADICTION + "\n" + PuzzleFixtures.NESTED;
+        List<String> results = run(new BatchSolver("B", 2, true, 0), input);
+        assertArrayEquals("Results should follow the input lines", new String[] { "1", "3", "4" },
+                lineNumbers(results));
+        assertEquals("Plain propagation should finish the nested board consistently", "2",
+                results.get(0).split(" ")[1]);
+    }
+
+    @Test
+    public void testCompletionOrderReportsEveryLine() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            input.append(PuzzleFixtures.NESTED).append('\n');
+        }
+        String[] numbers = lineNumbers(run(new BatchSolver("C3", 3, false, 0), input.toString()));
+        Arrays.sort(numbers, (a, b) -> Integer.parseInt(a) - Integer.parseInt(b));
+        String[] expected = new String[20];
+        for (int i = 0; i < 20; i++) {
+            expected[i] = String.valueOf(i + 1);
+        }
+        assertArrayEquals("Every line should get one result", expected, numbers);
+    }
+
+    @Test
+    public void testReadAheadIsBounded() throws Exception {
+        int threads = 2;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            input.append(PuzzleFixtures.NESTED).append('\n');
+        }
+        int[] read = new int[1];
+        BufferedReader in = new BufferedReader(new StringReader(input.toString())) {
+            @Override
+            public String readLine() throws IOException {
+                String line = super.readLine();
+                if (line != null) {
+                    read[0]++;
+                }
+                return line;
+            }
+        };
+        List<Integer> ahead = Collections.synchronizedList(new ArrayList<>());
+        int[] written = new int[1];
+        PrintStream out = new PrintStream(new ByteArrayOutputStream()) {
+            @Override
+            public void println(String x) {
+                ahead.add(read[0] - written[0]++);
+            }
+        };
+        new BatchSolver("B", threads, true, 0).run(in, out);
+        assertEquals(50, written[0]);
+        for (int lines : ahead) {
+            assertTrue("At most threads * READ_AHEAD lines should be read ahead of the output, not " + lines,
+                    lines <= threads * BatchSolver.READ_AHEAD);
+        }
+    }
+
+    @Test
+    public void testErrorsCarryTheirLine() throws Exception {
+        BatchSolver solver = new BatchSolver("B", 2, false, 0) {
+            @Override
+            String solve(int lineNumber, String spec) {
+                if (lineNumber == 2) {
+                    throw new AssertionError("worker failed");
+                }
+                return super.solve(lineNumber, spec);
+            }
+        };
+        List<String> results = run(solver, PuzzleFixtures.NESTED + "\n" + PuzzleFixtures.NESTED + "\nnot a spec\n");
+        assertTrue("A failed worker should report its line: " + results,
+                results.contains("2 error java.lang.AssertionError: worker failed"));
+        assertTrue("A malformed spec should report its line: " + results,
+                results.stream().anyMatch(result -> result.startsWith("3 error ")));
+    }
+
+    private static List<String> run(BatchSolver solver, String input) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "US-ASCII");
+        solver.run(new BufferedReader(new StringReader(input)), out);
+        String text = new String(bytes.toByteArray(), StandardCharsets.US_ASCII).trim();
+        return Arrays.asList(text.split("\\R"));
+    }
+
+    private static String[] lineNumbers(List<String> results) {
+        return results.stream().map(result -> result.split(" ")[0]).toArray(String[]::new);
+    }
+}
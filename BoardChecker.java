@@ -0,0 +1,160 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * BoardChecker.java
+ *
+ * Whole-board consistency check used to verify a board from scratch, without
+ * trusting the counters kept by {@link Game}.
+ *
+ * Instead of reading the nine cells around every clue, each row is decoded
+ * once into flags for the cells that are not cleared (painted or covered, the
+ * only ones that can still count towards a clue) and turned into horizontal
+ * 3-cell sums; adding three consecutive rows of sums gives the 3x3 window sums
+ * of a whole row at once. The inner loops are plain branch-free int array
+ * loops that the JIT can vectorise. Large boards are split into row stripes checked
+ * in parallel on the common fork-join pool, and every stripe stops as soon as
+ * any stripe has found a clue that can no longer be met.
+ */
+public final class BoardChecker {
+
+    private static final int STRIPE_ROWS = 64; // rows checked by one task
+    private static final int PARALLEL_CELLS = 1 << 16; // smaller boards stay on the caller thread
+
+    private static final long LOW_BITS = 0x5555555555555555L; // low bit of every 2-bit cell
+
+    private BoardChecker() {
+    }
+
+    /**
+     * @param game the board to check
+     * @return true if every clue can still be met, i.e. it has at least as many
+     *         painted and covered cells around it as its value
+     */
+    public static boolean isConsistent(Game game) {
+        return isConsistent(game, (long) game.size * game.size >= PARALLEL_CELLS);
+    }
+
+    /**
+     * @param game     the board to check
+     * @param parallel true to check row stripes on the common pool, false to
+     *                 check every row on the caller thread
+     * @return the same verdict as {@link #isConsistent(Game)}
+     */
+    static boolean isConsistent(Game game, boolean parallel) {
+        AtomicBoolean inconsistent = new AtomicBoolean();
+        Stripe all = new Stripe(game, 0, game.size, parallel, inconsistent);
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(all);
+        } else {
+            all.scan();
+        }
+        return !inconsistent.get();
+    }
+
+    /**
+     * @param game the board to check
+     * @return true if no cell is covered
+     */
+    public static boolean allUncovered(Game game) {
+        int cells = game.size * game.size;
+        long[] words = game.state;
+        for (int w = 0; w < words.length; w++) {
+            long x = words[w];
+            long covered = ~(x | x >>> 1) & LOW_BITS; // low bit set for every 00 cell
+            int valid = Math.min(Game.CELLS_PER_WORD, cells - w * Game.CELLS_PER_WORD);
+            if (valid < Game.CELLS_PER_WORD) {
+                covered &= (1L << (2 * valid)) - 1; // ignore the padding of the last word
+            }
+            if (covered != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Stripe extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Game game;
+        private final int from;
+        private final int to;
+        private final boolean parallel;
+        private final AtomicBoolean inconsistent;
+
+        Stripe(Game game, int from, int to, boolean parallel, AtomicBoolean inconsistent) {
+            this.game = game;
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+            this.inconsistent = inconsistent;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > STRIPE_ROWS && parallel) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Stripe(game, from, mid, parallel, inconsistent),
+                        new Stripe(game, mid, to, parallel, inconsistent));
+                return;
+            }
+            scan();
+        }
+
+        private void scan() {
+            int n = game.size;
+            // horizontal sums of painted plus covered cells for rows r-1, r, r+1
+            int[] above = new int[n];
+            int[] current = new int[n];
+            int[] below = new int[n];
+            int[] open = new int[n + 2]; // painted or covered flags, padded at both ends
+            int[] window = new int[n];
+
+            horizontalSums(from - 1, open, above);
+            horizontalSums(from, open, current);
+            for (int r = from; r < to; r++) {
+                if (inconsistent.get()) {
+                    return; // another stripe already proved it
+                }
+                horizontalSums(r + 1, open, below);
+                for (int c = 0; c < n; c++) {
+                    window[c] = above[c] + current[c] + below[c];
+                }
+                // a clue is unmet when window - clue < 0; cells without a clue hold -1
+                int unmet = 0;
+                byte[] clues = game.board;
+                int base = r * n;
+                for (int c = 0; c < n; c++) {
+                    unmet |= window[c] - clues[base + c];
+                }
+                if (unmet < 0) {
+                    inconsistent.set(true);
+                    return;
+                }
+                int[] spare = above;
+                above = current;
+                current = below;
+                below = spare;
+            }
+        }
+
+        private void horizontalSums(int r, int[] open, int[] sums) {
+            int n = game.size;
+            if (r < 0 || r >= n) {
+                Arrays.fill(sums, 0);
+                return;
+            }
+            long[] words = game.state;
+            int base = r * n;
+            for (int c = 0; c < n; c++) {
+                int s = Game.get2(words, base + c);
+                open[c + 1] = s == game.CLEARED ? 0 : 1; // painted or covered
+            }
+            for (int c = 0; c < n; c++) {
+                sums[c] = open[c] + open[c + 1] + open[c + 2];
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BoardCheckerTest {
+
+    private static final int SIZE = 300; // above the parallel threshold, several stripes
+
+    @Test
+    public void testStripesAgreeOnSolvedBoard() {
+        Game board = solved(-1);
+        assertTrue("Sequential check of the solution", BoardChecker.isConsistent(board, false));
+        assertTrue("Striped check of the solution", BoardChecker.isConsistent(board, true));
+        assertTrue(BoardChecker.isConsistent(board));
+        assertTrue(BoardChecker.allUncovered(board));
+    }
+
+    @Test
+    public void testStripesAgreeOnOneWrongCell() {
+        Game solution = solved(-1);
+        int wrong = -1;
+        for (int cell = SIZE * SIZE / 2; wrong < 0; cell++) { // a stripe in the middle of the board
+            if (solution.getState(cell) == solution.PAINTED) {
+                wrong = cell;
+            }
+        }
+        Game board = solved(wrong);
+        assertFalse("Sequential check should find the unmet clue", BoardChecker.isConsistent(board, false));
+        assertFalse("Striped check should find the unmet clue", BoardChecker.isConsistent(board, true));
+        assertFalse("The counters of the board should agree", board.getViolatedCount() == 0);
+    }
+
+    /**
+     * @param wrong a painted cell to clear instead, or -1
+     * @return a generated board with every cell set as in its solution
+     */
+    private static Game solved(int wrong) {
+        Game board = PuzzleFixtures.board(new PuzzleGenerator(7, 0.5).generate(SIZE).spec());
+        for (int cell = 0; cell < SIZE * SIZE; cell++) {
+            if (board.getSolution(cell / SIZE, cell % SIZE) == board.PAINTED && cell != wrong) {
+                board.paint(cell);
+            } else {
+                board.clear(cell);
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * BoardRenderer.java
+ *
+ * Text renderer for a {@link Game}, producing the same layout as the original
+ * cell-by-cell printing but building each frame into one reusable buffer, so a
+ * frame costs a single write to the output.
+ *
+ * The renderer remembers the packed states of the last board frame it
+ * rendered. {@link #renderChanges()} compares the packed words against that
+ * snapshot and only renders the rows whose cells changed, which keeps verbose
+ * traces of large boards proportional to the moves made rather than to the
+ * board size.
+ */
+public final class BoardRenderer {
+
+    private final Game game;
+    private final StringBuilder frame = new StringBuilder();
+    private long[] rendered; // packed states of the last rendered board frame
+    private int renderedSize = -1;
+    private boolean[] changedRows = new boolean[0];
+    private ByteBuffer bytes = ByteBuffer.allocate(0);
+
+    public BoardRenderer(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Renders the initial game view: clues and the hidden paint.
+     *
+     * @return the frame, valid until the next call on this renderer
+     */
+    public CharSequence renderGame() {
+        frame.setLength(0);
+        header();
+        for (int r = 0; r < game.size; r++) {
+            rowLabel(r);
+            for (int c = 0; c < game.size; c++) {
+                int clue = game.getClue(r, c);
+                int paint = game.getSolution(r, c);
+                int length = (clue == -1 ? 1 : digits(clue))
+                        + (paint == game.PAINTED || paint == game.CLEARED ? 1 : 0);
+                pad(4 - length);
+                if (clue == -1) {
+                    frame.append(' ');
+                } else {
+                    frame.append(clue);
+                }
+                if (paint == game.PAINTED) {
+                    frame.append('*');
+                } else if (paint == game.CLEARED) {
+                    frame.append('_');
+                }
+            }
+            frame.append('\n');
+        }
+        frame.append('\n');
+        return frame;
+    }
+
+    /**
+     * Renders the agent view of the whole board and remembers it as the base
+     * for {@link #renderChanges()}.
+     *
+     * @return the frame, valid until the next call on this renderer
+     */
+    public CharSequence renderBoard() {
+        frame.setLength(0);
+        header();
+        for (int r = 0; r < game.size; r++) {
+            boardRow(r);
+        }
+        frame.append('\n');
+        snapshot();
+        return frame;
+    }
+
+    /**
+     * Renders only the rows of the agent view that changed since the last
+     * board frame (or the whole board if none was rendered yet).
+     *
+     * @return the changed rows, empty if nothing changed
+     */
+    public CharSequence renderChanges() {
+        if (rendered == null || renderedSize != game.size || rendered.length != game.state.length) {
+            return renderBoard();
+        }
+        frame.setLength(0);
+        int size = game.size;
+        boolean any = false;
+        for (int w = 0; w < rendered.length; w++) {
+            long diff = rendered[w] ^ game.state[w];
+            while (diff != 0) {
+                int bit = Long.numberOfTrailingZeros(diff);
+                int cell = w * Game.CELLS_PER_WORD + (bit >>> 1);
+                changedRows[cell / size] = true;
+                any = true;
+                diff &= ~(3L << (bit & ~1)); // skip the rest of this cell
+            }
+        }
+        if (!any) {
+            return frame;
+        }
+        for (int r = 0; r < size; r++) {
+            if (changedRows[r]) {
+                boardRow(r);
+                changedRows[r] = false;
+            }
+        }
+        frame.append('\n');
+        snapshot();
+        return frame;
+    }
+
+    /**
+     * Writes the last rendered frame to an appendable.
+     *
+     * @param out the destination
+     * @throws IOException if the appendable fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(frame);
+    }
+
+    /**
+     * Writes the last rendered frame to a channel as ASCII, through a byte
+     * buffer that is reused between frames.
+     *
+     * @param channel the destination
+     * @throws IOException if the channel fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        int length = frame.length();
+        if (bytes.capacity() < length) {
+            bytes = ByteBuffer.allocate(Math.max(length, bytes.capacity() * 2));
+        }
+        bytes.clear();
+        for (int i = 0; i < length; i++) {
+            bytes.put((byte) frame.charAt(i));
+        }
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void header() {
+        frame.append('\n');
+        // first line
+        pad(4);
+        for (int c = 0; c < game.size; c++) {
+            pad(4 - digits(c));
+            frame.append(c);
+        }
+        frame.append('\n');
+        // second line
+        pad(5);
+        for (int c = 0; c < game.size; c++) {
+            frame.append("--- "); // separator
+        }
+        frame.append('\n');
+    }
+
+    private void boardRow(int r) {
+        rowLabel(r);
+        for (int c = 0; c < game.size; c++) {
+            int clue = game.getClue(r, c);
+            int state = game.getState(r, c);
+            int length = (state <= game.CLEARED ? 1 : 0) + (clue == -1 ? 1 : digits(clue));
+            pad(4 - length);
+            switch (state) {
+                case 0:
+                    frame.append('.');
+                    break;
+                case 1:
+                    frame.append('*');
+                    break;
+                case 2:
+                    frame.append('_');
+                    break;
+            }
+            if (clue == -1) {
+                frame.append('-');
+            } else {
+                frame.append(clue);
+            }
+        }
+        frame.append('\n');
+    }
+
+    private void rowLabel(int r) {
+        frame.append(' ').append(r).append("| "); // index+separator
+    }
+
+    private void snapshot() {
+        if (rendered == null || rendered.length != game.state.length) {
+            rendered = new long[game.state.length];
+        }
+        System.arraycopy(game.state, 0, rendered, 0, rendered.length);
+        if (renderedSize != game.size) {
+            renderedSize = game.size;
+            changedRows = new boolean[game.size];
+        }
+    }
+
+    private void pad(int count) {
+        for (int i = 0; i < count; i++) {
+            frame.append(' ');
+        }
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
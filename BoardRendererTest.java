@@ -0,0 +1,69 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class BoardRendererTest {
+
+    @Test
+    public void testChangesRenderOnlyTheChangedRow() throws Exception {
+        Game board = generated(5); // 25 cells: every row shares the first packed word
+        BoardRenderer renderer = new BoardRenderer(board);
+        renderer.renderBoard();
+        assertEquals("Nothing changed since the last frame", "", renderer.renderChanges().toString());
+
+        board.paint(1, 2); // row 1 shares its word with rows 0 and 2
+        assertEquals("Only row 1 should be rendered", row(board, 1) + "\n", renderer.renderChanges().toString());
+        assertEquals("The change should now be the base", "", renderer.renderChanges().toString());
+    }
+
+    @Test
+    public void testChangesAcrossWords() throws Exception {
+        Game board = generated(9); // 81 cells over three packed words
+        BoardRenderer renderer = new BoardRenderer(board);
+        renderer.renderBoard();
+        board.clear(0, 0);
+        board.paint(8, 8);
+        assertEquals("Rows 0 and 8 should be rendered in order", row(board, 0) + row(board, 8) + "\n",
+                renderer.renderChanges().toString());
+    }
+
+    @Test
+    public void testWritersCopyTheFrame() throws Exception {
+        Game board = generated(6);
+        BoardRenderer renderer = new BoardRenderer(board);
+        String frame = renderer.renderBoard().toString();
+        assertTrue("The frame should show every row", frame.contains(" 5| "));
+
+        StringBuilder text = new StringBuilder();
+        renderer.writeTo(text);
+        assertEquals(frame, text.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(bytes);
+        renderer.writeTo(channel);
+        renderer.writeTo(channel); // the reused buffer starts over for every write
+        assertEquals(frame + frame, new String(bytes.toByteArray(), StandardCharsets.US_ASCII));
+    }
+
+    private static Game generated(int size) {
+        return PuzzleFixtures.board(new PuzzleGenerator(size, 0.5).generate(size).spec());
+    }
+
+    /**
+     * @return the line of a row in a full frame of the current board
+     */
+    private static String row(Game board, int r) {
+        for (String line : new BoardRenderer(board).renderBoard().toString().split("\n")) {
+            if (line.startsWith(" " + r + "| ")) {
+                return line + "\n";
+            }
+        }
+        throw new AssertionError("no row " + r);
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.HashMap;
+import java.util.Map;
+
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Variable;
+
+/**
+ * CellVariables.java
+ *
+ * Dense table between the cells of a board and the LogicNG variables that say
+ * whether they are painted. Each variable is created once, the first time its
+ * cell is asked for, so encoding a clue is an array lookup and applying a model
+ * is a hash lookup on the variable, with no names built or parsed on the way.
+ * Variables that do not belong to the table (such as the auxiliary variables
+ * of an encoding) map to -1.
+ */
+public final class CellVariables {
+
+    private final FormulaFactory f;
+    private final int size;
+    private final Variable[] variables;
+    private final Map<Variable, Integer> cells = new HashMap<>();
+
+    /**
+     * @param f    the factory the variables are created in
+     * @param size the number of rows (and columns) of the board
+     */
+    public CellVariables(FormulaFactory f, int size) {
+        this.f = f;
+        this.size = size;
+        this.variables = new Variable[size * size];
+    }
+
+    /**
+     * @param cell the flat index of a cell
+     * @return the variable that is true when the cell is painted
+     */
+    public Variable variable(int cell) {
+        Variable variable = variables[cell];
+        if (variable == null) {
+            variable = f.variable("P_" + cell / size + "_" + cell % size);
+            variables[cell] = variable;
+            cells.put(variable, cell);
+        }
+        return variable;
+    }
+
+    /**
+     * @param variable a variable from a model
+     * @return the flat index of its cell, or -1 if it is not a cell variable
+     */
+    public int cell(Variable variable) {
+        Integer cell = cells.get(variable);
+        return cell == null ? -1 : cell;
+    }
+
+    public int size() {
+        return size;
+    }
+}
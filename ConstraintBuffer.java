@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+
+/**
+ * ConstraintBuffer.java
+ *
+ * Clauses and exactly-k constraints over DIMACS variables, kept in one flat
+ * int array so that the same encoding can be loaded into any number of
+ * solvers without encoding the board again. Each constraint is stored as
+ * {@code k, length, literals...}, with k = -1 for a plain clause.
+ */
+public final class ConstraintBuffer {
+
+    private static final int CLAUSE = -1;
+
+    private int[] data = new int[1024];
+    private int length;
+    private int constraints;
+    private int clauses;
+    private int maxVariable;
+
+    public void clear() {
+        length = 0;
+        constraints = 0;
+        clauses = 0;
+        maxVariable = 0;
+    }
+
+    /**
+     * Adds a clause.
+     *
+     * @param literals the literals, of which only the first {@code count} are
+     *                 used
+     * @param count    the number of literals, 0 for the empty clause
+     */
+    public void clause(int[] literals, int count) {
+        add(CLAUSE, literals, count);
+        clauses++;
+    }
+
+    /**
+     * Adds a constraint that exactly {@code k} of the literals are true.
+     *
+     * @param literals the literals, of which only the first {@code count} are
+     *                 used
+     * @param count    the number of literals
+     * @param k        the number of them that must be true
+     */
+    public void exactly(int[] literals, int count, int k) {
+        add(k, literals, count);
+    }
+
+    public int size() {
+        return constraints;
+    }
+
+    public int maxVariable() {
+        return maxVariable;
+    }
+
+    /**
+     * Adds every constraint to a solver.
+     *
+     * @param solver the solver to load
+     * @throws ContradictionException if the solver finds the constraints
+     *                                trivially unsatisfiable
+     */
+    public void addTo(ISolver solver) throws ContradictionException {
+        VecInt literals = new VecInt(9);
+        int i = 0;
+        while (i < length) {
+            int k = data[i];
+            int count = data[i + 1];
+            literals.clear();
+            for (int j = i + 2; j < i + 2 + count; j++) {
+                literals.push(data[j]);
+            }
+            if (k == CLAUSE) {
+                solver.addClause(literals);
+            } else {
+                solver.addExactly(literals, k);
+            }
+            i += 2 + count;
+        }
+    }
+
+    /**
+     * Writes the constraints in DIMACS format. DIMACS has no cardinality
+     * constraints, so each exactly-k constraint is written as a comment line
+     * {@code c exactly <k> <literals> 0}.
+     *
+     * @param out where to write
+     * @throws IOException if the output fails
+     */
+    public void writeDimacs(Appendable out) throws IOException {
+        // DIMACS preamble
+        out.append("p cnf ").append(String.valueOf(maxVariable)).append(' ').append(String.valueOf(clauses))
+                .append('\n');
+        StringBuilder line = new StringBuilder();
+        int i = 0;
+        while (i < length) {
+            int k = data[i];
+            int count = data[i + 1];
+            line.setLength(0);
+            if (k != CLAUSE) {
+                line.append("c exactly ").append(k).append(' ');
+            }
+            for (int j = i + 2; j < i + 2 + count; j++) {
+                line.append(data[j]).append(' ');
+            }
+            line.append("0\n"); // Clause end
+            out.append(line);
+            i += 2 + count;
+        }
+    }
+
+    private void add(int k, int[] literals, int count) {
+        if (length + 2 + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 2 + count));
+        }
+        data[length++] = k;
+        data[length++] = count;
+        for (int i = 0; i < count; i++) {
+            data[length++] = literals[i];
+            maxVariable = Math.max(maxVariable, Math.abs(literals[i]));
+        }
+        constraints++;
+    }
+}
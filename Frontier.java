@@ -0,0 +1,332 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Frontier.java
+ *
+ * The covered cells that some clue still constrains, split into independent
+ * components: two cells are in the same component when a chain of clues links
+ * them, each clue sharing a covered cell with the next. Components share no
+ * clue, so each one can be solved as its own small instance and the answers
+ * simply put together; the work then grows with the largest component rather
+ * than with the board.
+ *
+ * Every component lists its covered cells (in increasing order) and the clues
+ * that have at least one of them in their window. Covered cells far from all
+ * clues belong to no component, since no clue can ever force them.
+ */
+public final class Frontier {
+
+    /**
+     * Solves one component.
+     */
+    public interface ComponentSolver {
+        /**
+         * @param cells the covered cells of the component, in increasing order
+         * @param clues the clue cells that constrain them
+         * @return the moves found, cell + 1 to paint a cell and -(cell + 1) to
+         *         clear it, or null if the component has no solution
+         * @throws Exception if the solver fails
+         */
+        int[] solve(int[] cells, int[] clues) throws Exception;
+    }
+
+    private final Game game;
+    private final int[] cellStart; // component c owns cellList[cellStart[c] .. cellStart[c + 1])
+    private final int[] cellList;
+    private final int[] clueStart;
+    private final int[] clueList;
+    private final boolean contradicted;
+
+    private Frontier(Game game, int[] cellStart, int[] cellList, int[] clueStart, int[] clueList,
+            boolean contradicted) {
+        this.game = game;
+        this.cellStart = cellStart;
+        this.cellList = cellList;
+        this.clueStart = clueStart;
+        this.clueList = clueList;
+        this.contradicted = contradicted;
+    }
+
+    /**
+     * Splits the covered cells of a board into components with a union-find
+     * over the windows of the clues.
+     *
+     * @param game the board
+     * @return the components of its frontier
+     */
+    public static Frontier of(Game game) {
+        int cells = game.size * game.size;
+        Neighbourhood neighbourhood = game.getNeighbourhood();
+        int[] parent = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            parent[cell] = cell;
+        }
+
+        boolean contradicted = false;
+        int activeClues = 0;
+        for (int clue = 0; clue < cells; clue++) {
+            if (game.getClue(clue) == -1) {
+                continue;
+            }
+            if (game.coveredAround(clue) == 0) {
+                // nothing left to decide: the clue holds or it never will
+                contradicted |= game.paintedAround(clue) != game.getClue(clue);
+                continue;
+            }
+            activeClues++;
+            int first = -1;
+            for (int offset : neighbourhood.window(clue)) {
+                int cell = clue + offset;
+                if (game.getState(cell) != game.COVERED) {
+                    continue;
+                }
+                if (first == -1) {
+                    first = find(parent, cell);
+                } else {
+                    int root = find(parent, cell);
+                    if (root != first) {
+                        parent[root] = first;
+                    }
+                }
+            }
+        }
+
+        // number the components by their root, in order of first cell
+        int[] component = new int[cells];
+        Arrays.fill(component, -1);
+        int components = 0;
+        int frontierCells = 0;
+        int[] cellCount = new int[cells + 1];
+        for (int cell = 0; cell < cells; cell++) {
+            if (game.getState(cell) != game.COVERED || !game.isNextToClue(cell)) {
+                continue;
+            }
+            int root = find(parent, cell);
+            if (component[root] == -1) {
+                component[root] = components++;
+            }
+            cellCount[component[root]]++;
+            frontierCells++;
+        }
+
+        int[] cellStart = prefixSums(cellCount, components);
+        int[] cellList = new int[frontierCells];
+        int[] fill = Arrays.copyOf(cellStart, components);
+        for (int cell = 0; cell < cells; cell++) {
+            if (game.getState(cell) == game.COVERED && game.isNextToClue(cell)) {
+                cellList[fill[component[find(parent, cell)]]++] = cell;
+            }
+        }
+
+        int[] clueComponent = new int[activeClues];
+        int[] clueCells = new int[activeClues];
+        int[] clueCount = new int[components + 1];
+        int next = 0;
+        for (int clue = 0; clue < cells; clue++) {
+            if (game.getClue(clue) == -1 || game.coveredAround(clue) == 0) {
+                continue;
+            }
+            for (int offset : neighbourhood.window(clue)) {
+                int cell = clue + offset;
+                if (game.getState(cell) == game.COVERED) {
+                    clueComponent[next] = component[find(parent, cell)];
+                    break;
+                }
+            }
+            clueCells[next] = clue;
+            clueCount[clueComponent[next]]++;
+            next++;
+        }
+        int[] clueStart = prefixSums(clueCount, components);
+        int[] clueList = new int[activeClues];
+        fill = Arrays.copyOf(clueStart, components);
+        for (int i = 0; i < activeClues; i++) {
+            clueList[fill[clueComponent[i]]++] = clueCells[i];
+        }
+
+        return new Frontier(game, cellStart, cellList, clueStart, clueList, contradicted);
+    }
+
+    /**
+     * @return the number of components
+     */
+    public int size() {
+        return cellStart.length - 1;
+    }
+
+    /**
+     * @param component a component
+     * @return its covered cells, in increasing order
+     */
+    public int[] cells(int component) {
+        return Arrays.copyOfRange(cellList, cellStart[component], cellStart[component + 1]);
+    }
+
+    /**
+     * @param component a component
+     * @return the clue cells that constrain it
+     */
+    public int[] clues(int component) {
+        return Arrays.copyOfRange(clueList, clueStart[component], clueStart[component + 1]);
+    }
+
+    /**
+     * @return the number of cells in the largest component
+     */
+    public int largest() {
+        int largest = 0;
+        for (int c = 0; c < size(); c++) {
+            largest = Math.max(largest, cellStart[c + 1] - cellStart[c]);
+        }
+        return largest;
+    }
+
+    /**
+     * @return true if a clue with no covered cell left around it is not met,
+     *         so the board has no solution whatever the components say
+     */
+    public boolean isContradicted() {
+        return contradicted;
+    }
+
+    /**
+     * Collects the covered cells of a clue window as variables local to a
+     * component: the cell at position i of {@code cells} is variable i + 1.
+     *
+     * @param clue  the clue cell
+     * @param cells the cells of the component of the clue
+     * @param out   receives the variables, at least 9 long
+     * @return the number of variables written
+     */
+    public int windowVariables(int clue, int[] cells, int[] out) {
+        int count = 0;
+        for (int offset : game.getNeighbourhood().window(clue)) {
+            int cell = clue + offset;
+            if (game.getState(cell) == game.COVERED) {
+                out[count++] = Arrays.binarySearch(cells, cell) + 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Solves every component, on the common fork-join pool when there is more
+     * than one. The board must not change until this returns.
+     *
+     * @param solver solves one component
+     * @return the moves of all the components, or null if any component has
+     *         no solution
+     * @throws ExecutionException if a component solver fails
+     */
+    public int[] solve(ComponentSolver solver) throws ExecutionException {
+        if (contradicted) {
+            return null;
+        }
+        List<int[]> results = new ArrayList<>();
+        try {
+            if (size() == 1) {
+                results.add(solver.solve(cells(0), clues(0)));
+            } else {
+                List<Callable<int[]>> tasks = new ArrayList<>();
+                for (int c = 0; c < size(); c++) {
+                    int component = c;
+                    tasks.add(() -> solver.solve(cells(component), clues(component)));
+                }
+                for (Future<int[]> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                    results.add(result.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+
+        int total = 0;
+        for (int[] moves : results) {
+            if (moves == null) {
+                return null;
+            }
+            total += moves.length;
+        }
+        int[] all = new int[total];
+        int at = 0;
+        for (int[] moves : results) {
+            System.arraycopy(moves, 0, all, at, moves.length);
+            at += moves.length;
+        }
+        return all;
+    }
+
+    /**
+     * Turns the moves found for a component, with variable i + 1 standing for
+     * cells[i], into moves on the cells, in place.
+     *
+     * @param moves variable to paint it and -variable to clear it, or null
+     * @param cells the cells of the component
+     * @return the same moves, now cell + 1 and -(cell + 1), or null if the
+     *         moves were null
+     */
+    public static int[] toCells(int[] moves, int[] cells) {
+        if (moves != null) {
+            for (int i = 0; i < moves.length; i++) {
+                int cell = cells[Math.abs(moves[i]) - 1];
+                moves[i] = moves[i] > 0 ? cell + 1 : -(cell + 1);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Applies moves to the game board.
+     *
+     * @param moves   cell + 1 to paint a cell and -(cell + 1) to clear it, or
+     *                null if the clues could not be satisfied
+     * @param board   the game board to update
+     * @param verbose whether to print every cell that is updated
+     */
+    public static void apply(int[] moves, Game board, boolean verbose) {
+        if (moves == null) {
+            System.err.println("No solution found, or puzzle is unsolvable under current constraints.");
+            return;
+        }
+        for (int move : moves) {
+            int cell = Math.abs(move) - 1;
+            if (move > 0) {
+                board.paint(cell);
+            } else {
+                board.clear(cell);
+            }
+
+            if (verbose) {
+                System.out.println((move > 0 ? "Painting" : "Clearing") + " cell [" + cell / board.size + ", "
+                        + cell % board.size + "]");
+            }
+        }
+    }
+
+    private static int[] prefixSums(int[] counts, int n) {
+        int[] start = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            start[i + 1] = start[i] + counts[i];
+        }
+        return start;
+    }
+
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]]; // path halving
+            cell = parent[cell];
+        }
+        return cell;
+    }
+}
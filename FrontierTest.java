@@ -0,0 +1,56 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FrontierTest {
+
+    @Test
+    public void testSeparateCluesGiveSeparateComponents() {
+        Game board = new Game();
+        board.setGame(".1_,.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_,.-_;"
+                + ".-_,.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_,.1_");
+        Frontier frontier = Frontier.of(board);
+        assertEquals("Clues in opposite corners should not share cells", 2, frontier.size());
+        assertArrayEquals("First component should be the top-left window", new int[] { 0, 1, 5, 6 },
+                frontier.cells(0));
+        assertArrayEquals("First component should hold the top-left clue", new int[] { 0 }, frontier.clues(0));
+        assertArrayEquals("Second component should be the bottom-right window", new int[] { 18, 19, 23, 24 },
+                frontier.cells(1));
+        assertEquals("Largest component should have four cells", 4, frontier.largest());
+        assertFalse("Board should not be contradicted", frontier.isContradicted());
+    }
+
+    @Test
+    public void testOverlappingCluesShareComponent() {
+        Game board = new Game();
+        board.setGame(".1_,.-_,.1_,.-_,.-_;.-_,.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_,.-_;"
+                + ".-_,.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_,.-_");
+        board.clear(0, 1); // the clues still share cell (1, 1)
+        Frontier frontier = Frontier.of(board);
+        assertEquals("Clues sharing a covered cell should be one component", 1, frontier.size());
+        assertArrayEquals("Component should hold the covered cells of both windows",
+                new int[] { 0, 2, 3, 5, 6, 7, 8 }, frontier.cells(0));
+        assertArrayEquals("Component should hold both clues", new int[] { 0, 2 }, frontier.clues(0));
+        int[] variables = new int[9];
+        int count = frontier.windowVariables(2, frontier.cells(0), variables);
+        assertArrayEquals("Window of (0, 2) should map to component positions",
+                new int[] { 2, 3, 5, 6, 7 }, Arrays.copyOf(variables, count));
+    }
+
+    @Test
+    public void testUnmetClosedClueIsContradicted() {
+        Game board = new Game();
+        board.setGame(".1_,.-_;.-_,.-_");
+        for (int cell = 0; cell < 4; cell++) {
+            board.clear(cell);
+        }
+        Frontier frontier = Frontier.of(board);
+        assertEquals("No covered cell should be left", 0, frontier.size());
+        assertTrue("A clue of 1 with every cell cleared cannot be met", frontier.isContradicted());
+    }
+}
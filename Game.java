@@ -6,209 +6,261 @@
  * author: a.toniolo
  */
 
-import java.util.Arrays;
-
 public class Game {
 
 	public final int COVERED = 0;
 	public final int PAINTED = 1;
 	public final int CLEARED = 2;
 
-	int[][] board;
-	int[][] state;
-	int[][] game;
+	byte[] board;
+	long[] state;
+	long[] game;
 	int size;
+	Neighbourhood neighbourhood;
+	private BoardRenderer renderer;
 	/*
 	 * board is the one the agent will play with
 	 * state indicates the status of the cells
 	 * game is the hidden board, the one the agent has to be able to find
+	 *
+	 * all three are flat and row-major (cell = row * size + col): board keeps
+	 * one clue per byte (-1 for no clue), state and game pack 2 bits per cell,
+	 * CELLS_PER_WORD cells in each long
 	 */
 
+	byte[] counts;
+	int coveredCells;
+	int violatedClues;
+	/*
+	 * counts keeps, for every clue cell, the painted (low nibble) and covered
+	 * (high nibble) cells of its 3x3 window; paint() and clear() update it
+	 * together with the number of covered cells and the number of clues that
+	 * can no longer be met (painted + covered < clue)
+	 */
+
+	static final int CELLS_PER_WORD = 32;
+
 	public Game() {
 		size = 2;
-		board = new int[size][size];
-		state = new int[size][size];
-		game = new int[size][size];
+		allocate(size);
+	}
+
+	private void allocate(int size) {
+		int cells = size * size;
+		board = new byte[cells];
+		state = new long[(cells + CELLS_PER_WORD - 1) / CELLS_PER_WORD];
+		game = new long[state.length];
+		counts = new byte[cells];
+		neighbourhood = Neighbourhood.of(size);
+		recount();
+	}
+
+	static int get2(long[] words, int cell) {
+		return (int) (words[cell >>> 5] >>> ((cell & 31) << 1)) & 3;
+	}
+
+	static void set2(long[] words, int cell, int value) {
+		int shift = (cell & 31) << 1;
+		int w = cell >>> 5;
+		words[w] = (words[w] & ~(3L << shift)) | ((long) value << shift);
 	}
 
 	public boolean setGame(String map) {
 		try {
-			String[] lines = map.split(";"); // rows
-			size = lines.length;
-			board = new int[size][size];
-			state = new int[size][size];
-			game = new int[size][size];
-			for (int r = 0; r < size; r++) {
-				String line = lines[r];
-				String[] set = line.split(","); // columns
-				int[] bl = new int[size];
-				int[] sl = new int[size];
-				int[] gl = new int[size];
-				for (int c = 0; c < size; c++) {
-					String ch = set[c];
-					char i = ch.charAt(0); // status
-					char e = ch.charAt(ch.length() - 1); // paint
-					String m = ch.substring(1, ch.length() - 1); // clue
-					int state = 0;
-					int paint = 0;
-					int clue = 0;
-					switch (i) {
-						case '*':
-							state = 1;
-							break;
-						case '_':
-							state = 2;
-							break;
-						case '.':
-							state = 0;
-					}
-					if (m.equals("-")) {
-						clue = -1;
-					} else {
-						clue = Integer.parseInt(m);
-					}
-					switch (e) {
-						case '*':
-							paint = 1;
-							break;
-						case '_':
-							paint = 2;
-							break;
-					}
-					bl[c] = clue;
-					sl[c] = state;
-					gl[c] = paint;
-				}
-				board[r] = bl;
-				state[r] = sl;
-				game[r] = gl;
-
-			}
+			PuzzleParser.parse(map, this);
 			return true;
-		} catch (Exception e) {
-			e.printStackTrace();
+		} catch (PuzzleFormatException e) {
+			System.err.println("Invalid game spec: " + e.getMessage());
 			return false;
 		}
 
 	}
 
-	public void printGame() {
-		// this method is used to print the initial game view
+	void reset(int size) {
+		// used by the parser once the size of the board is known
+		this.size = size;
+		allocate(size);
+	}
 
-		System.out.println();
-		// first line
-		System.out.format("%4s", "   ");
-		for (int c = 0; c < board[0].length; c++) {
-			System.out.format("%4s", c);
-		}
-		System.out.println();
-		// second line
-		System.out.format("%5s", "   ");
-		for (int c = 0; c < board[0].length; c++) {
-			System.out.print("--- ");// separator
-		}
-		System.out.println();
-		// the board
-		for (int r = 0; r < board.length; r++) {
-			System.out.print(" " + r + "| ");// index+separator
-			for (int c = 0; c < board[0].length; c++) {
-				String code = "";
-				// print clues
-				if (board[r][c] == -1) {
-					code += " ";
-				} else {
-					code += board[r][c];
-				}
-				// print paint
-				switch (game[r][c]) {
-					case 1:
-						code += "*";
-						break;
-					case 2:
-						code += "_";
-						break;
+	void setCell(int cell, int clue, int state, int paint) {
+		// the counters are left alone, call recount() once the board is loaded
+		board[cell] = (byte) clue;
+		set2(this.state, cell, state);
+		set2(game, cell, paint);
+	}
+
+	void recount() {
+		coveredCells = 0;
+		violatedClues = 0;
+		for (int cell = 0; cell < size * size; cell++) {
+			if (getState(cell) == COVERED) {
+				coveredCells++;
+			}
+			if (board[cell] == -1) {
+				counts[cell] = 0;
+				continue;
+			}
+			int painted = 0, covered = 0;
+			for (int offset : neighbourhood.window(cell)) {
+				int neighbor = getState(cell + offset);
+				if (neighbor == PAINTED) {
+					painted++;
+				} else if (neighbor == COVERED) {
+					covered++;
 				}
-				System.out.format("%4s", code);
 			}
-			System.out.println();
+			counts[cell] = (byte) (covered << 4 | painted);
+			if (painted + covered < board[cell]) {
+				violatedClues++;
+			}
 		}
-		System.out.println();
+	}
+
+	public void printGame() {
+		// this method is used to print the initial game view
+		System.out.print(renderer().renderGame());
 	}
 
 	public void printBoard() {
 		// this is used to print the agent view
+		System.out.print(renderer().renderBoard());
+	}
 
-		System.out.println();
-		// first line
-		System.out.format("%4s", "   ");
-		for (int c = 0; c < board[0].length; c++) {
-			System.out.format("%4s", c);
-		}
-		System.out.println();
-		// second line
-		System.out.format("%5s", "   ");
-		for (int c = 0; c < board[0].length; c++) {
-			System.out.print("--- ");// separator
+	public void printChanges() {
+		// this prints only the rows of the agent view changed since the last print
+		System.out.print(renderer().renderChanges());
+	}
+
+	public BoardRenderer renderer() {
+		// one renderer per game, so that its buffer is reused between frames
+		if (renderer == null) {
+			renderer = new BoardRenderer(this);
 		}
-		System.out.println();
-		// the board
-		for (int r = 0; r < board.length; r++) {
-			System.out.print(" " + r + "| ");// index+separator
-			for (int c = 0; c < board[0].length; c++) {
-				String code = "";
-				// print state
-				switch (state[r][c]) {
-					case 0:
-						code += ".";
-						break;
-					case 1:
-						code += "*";
-						break;
-					case 2:
-						code += "_";
-						break;
-				}
-				// print clues
-				if (board[r][c] == -1) {
-					code += "-";
-				} else {
-					code += board[r][c];
-				}
-				System.out.format("%4s", code);
-			}
-			System.out.println();
+		return renderer;
+	}
+
+	public int[] getNeighborsStates(int x, int y) {
+		int cell = index(x, y);
+		int[] offsets = neighbourhood.neighbours(cell); // only the valid neighbors
+		int[] neighbors = new int[offsets.length];
+		for (int k = 0; k < offsets.length; k++) {
+			neighbors[k] = getState(cell + offsets[k]);
 		}
-		System.out.println();
+		return neighbors;
+	}
 
+	public Neighbourhood getNeighbourhood() {
+		return neighbourhood;
 	}
 
-	public int[] getNeighborsStates(int x, int y) {
-		int[] neighbors = new int[8];
-		int index = 0;
+	public int index(int x, int y) {
+		return x * size + y;
+	}
 
-		for (int i = -1; i <= 1; i++) {
-			for (int j = -1; j <= 1; j++) {
-				if (i == 0 && j == 0)
-					continue; // Skip the cell itself
+	public int getClue(int x, int y) {
+		return board[index(x, y)];
+	}
 
-				int nx = x + i;
-				int ny = y + j;
+	public int getClue(int cell) {
+		return board[cell];
+	}
 
-				if (nx >= 0 && nx < size && ny >= 0 && ny < size) {
-					neighbors[index++] = state[nx][ny];
-				}
+	public int getState(int x, int y) {
+		return get2(state, index(x, y));
+	}
+
+	public int getState(int cell) {
+		return get2(state, cell);
+	}
+
+	public int getSolution(int x, int y) {
+		return get2(game, index(x, y));
+	}
+
+	public int getCoveredCount() {
+		return coveredCells;
+	}
+
+	public int getViolatedCount() {
+		// clues that have fewer painted and covered cells around than their value
+		return violatedClues;
+	}
+
+	public int paintedAround(int cell) {
+		// painted cells in the window of a clue cell, the cell itself included
+		return counts[cell] & 0xF;
+	}
+
+	public int coveredAround(int cell) {
+		// covered cells in the window of a clue cell, the cell itself included
+		return counts[cell] >> 4 & 0xF;
+	}
+
+	public boolean isNextToClue(int cell) {
+		// whether some clue counts this cell, so that the clues can force it
+		for (int offset : neighbourhood.window(cell)) {
+			if (board[cell + offset] != -1) {
+				return true;
 			}
 		}
+		return false;
+	}
 
-		return Arrays.copyOf(neighbors, index); // Return only the valid neighbors
+	public int[][] getStateMatrix() {
+		// unpacked copy of the agent view, mostly for tests and debugging
+		int[][] matrix = new int[size][size];
+		for (int r = 0; r < size; r++) {
+			for (int c = 0; c < size; c++) {
+				matrix[r][c] = getState(r, c);
+			}
+		}
+		return matrix;
 	}
 
 	public void paint(int x, int y) {
-		state[x][y] = PAINTED; // Painted cell
+		paint(index(x, y));
+	}
+
+	public void paint(int cell) {
+		setState(cell, PAINTED); // Painted cell
 	}
 
 	public void clear(int x, int y) {
-		state[x][y] = CLEARED; // Cleared cell
+		clear(index(x, y));
+	}
+
+	public void clear(int cell) {
+		setState(cell, CLEARED); // Cleared cell
+	}
+
+	private void setState(int cell, int value) {
+		int old = get2(state, cell);
+		if (old == value) {
+			return;
+		}
+		set2(state, cell, value);
+		int dPainted = (value == PAINTED ? 1 : 0) - (old == PAINTED ? 1 : 0);
+		int dCovered = (value == COVERED ? 1 : 0) - (old == COVERED ? 1 : 0);
+		coveredCells += dCovered;
+
+		// the cell is in the window of exactly the clues in its own window
+		for (int offset : neighbourhood.window(cell)) {
+			int clueCell = cell + offset;
+			int clue = board[clueCell];
+			if (clue == -1) {
+				continue;
+			}
+			int painted = counts[clueCell] & 0xF;
+			int covered = counts[clueCell] >> 4 & 0xF;
+			boolean wasViolated = painted + covered < clue;
+			painted += dPainted;
+			covered += dCovered;
+			counts[clueCell] = (byte) (covered << 4 | painted);
+			boolean violated = painted + covered < clue;
+			if (violated != wasViolated) {
+				violatedClues += violated ? 1 : -1;
+			}
+		}
 	}
 
 }
@@ -0,0 +1,63 @@
+/**
+ * IntWorklist.java
+ *
+ * FIFO queue of cell indices in [0, capacity) where every index is queued at
+ * most once at a time. Used by the propagation agents to revisit only the clues
+ * touched by a move instead of sweeping the whole board. Backed by a ring
+ * buffer and a membership bitset, so adding and polling never allocate.
+ */
+public final class IntWorklist {
+
+    private final int[] ring;
+    private final long[] queued;
+    private int head;
+    private int count;
+
+    /**
+     * @param capacity the number of distinct indices, usually the number of
+     *                 cells of the board
+     */
+    public IntWorklist(int capacity) {
+        ring = new int[Math.max(capacity, 1)];
+        queued = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * Queues an index unless it is already waiting.
+     *
+     * @param index the index to queue
+     * @return true if the index was added
+     */
+    public boolean add(int index) {
+        long bit = 1L << index;
+        if ((queued[index >>> 6] & bit) != 0) {
+            return false;
+        }
+        queued[index >>> 6] |= bit;
+        int tail = head + count;
+        ring[tail >= ring.length ? tail - ring.length : tail] = index;
+        count++;
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest queued index.
+     *
+     * @return the index, which may be queued again afterwards
+     */
+    public int poll() {
+        int index = ring[head];
+        head = head + 1 == ring.length ? 0 : head + 1;
+        count--;
+        queued[index >>> 6] &= ~(1L << index);
+        return index;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+}
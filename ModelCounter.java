@@ -0,0 +1,437 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ModelCounter.java
+ *
+ * Exact model counting over Mosaic clues, with the number of models that
+ * paint each variable. Counting is a search like that of a SAT solver that
+ * does not stop at the first model: it branches on a variable, propagates the
+ * clue counts as {@link MosaicSolver} does, and adds up both branches. Two
+ * things keep it from enumerating the models one by one:
+ * <ul>
+ * <li>After every branch the undecided variables are split again into
+ * components that share no open clue, each counted on its own and the
+ * counts multiplied, so independent corners of the board cost a sum rather
+ * than a product.</li>
+ * <li>Every component counted is cached, keyed by its variables and the paint
+ * each of its open clues still needs, so a sub-component reached again
+ * through another assignment of the rest is not searched again.</li>
+ * </ul>
+ * The per-variable counts travel with the counts: within a branch, a
+ * variable of one component is painted in its own count of models times the
+ * counts of the other components.
+ *
+ * Variables are numbered 1..n as in {@link MosaicSolver}.
+ */
+public final class ModelCounter {
+
+    private static final int MAX_CACHE = 1 << 16; // components kept before the cache is cleared
+    private static final int MAX_DEPTH = 2000; // nested branches, to stay within the thread stack
+
+    /**
+     * Thrown when the count needs more work than the budget allows.
+     */
+    private static final class GaveUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        GaveUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The count of one component, by position in its sorted variables.
+     */
+    private static final class Count {
+        final BigInteger models;
+        final BigInteger[] painted;
+
+        Count(BigInteger models, BigInteger[] painted) {
+            this.models = models;
+            this.painted = painted;
+        }
+    }
+
+    /**
+     * Cache key: the variables of a component followed by the paint its open
+     * clues still need, in clue order.
+     */
+    private static final class Key {
+        final int[] data;
+        final int hash;
+
+        Key(int[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(data, ((Key) other).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final int variables;
+    private int[] clueVars = new int[64];
+    private int[] clueStart = new int[17];
+    private int[] clueNeed = new int[16];
+    private int clueCount;
+    private boolean ok = true; // false once a clue asks for more paint than it has cells
+
+    private int[] varClueStart;
+    private int[] varClues;
+    private byte[] value; // -1 while undecided
+    private int[] cluePainted;
+    private int[] clueOpen; // undecided variables of each clue
+    private int[] trail;
+    private int trailSize;
+    private int[] stamp; // per variable, for the component split
+    private int[] clueStamp;
+    private int epoch;
+    private final Map<Key, Count> cache = new HashMap<>();
+    private long work;
+    private long budget;
+
+    private BigInteger models;
+    private BigInteger[] painted;
+
+    /**
+     * @param variables the number of variables, numbered 1..variables
+     */
+    public ModelCounter(int variables) {
+        this.variables = variables;
+    }
+
+    /**
+     * Adds a clue: exactly {@code k} of the first {@code count} variables are
+     * true. Must be called before {@link #count}.
+     *
+     * @param vars  the variables, positive and distinct
+     * @param count the number of variables used
+     * @param k     how many of them are painted
+     */
+    public void exactly(int[] vars, int count, int k) {
+        if (k < 0 || k > count) {
+            ok = false; // the clue can no longer be met
+            return;
+        }
+        if (clueCount == clueNeed.length) {
+            clueNeed = Arrays.copyOf(clueNeed, clueCount * 2);
+            clueStart = Arrays.copyOf(clueStart, clueCount * 2 + 1);
+        }
+        int start = clueStart[clueCount];
+        if (start + count > clueVars.length) {
+            clueVars = Arrays.copyOf(clueVars, Math.max(clueVars.length * 2, start + count));
+        }
+        for (int i = 0; i < count; i++) {
+            clueVars[start + i] = vars[i] - 1;
+        }
+        clueNeed[clueCount] = k;
+        clueStart[++clueCount] = start + count;
+    }
+
+    /**
+     * Counts the models of the clues.
+     *
+     * @param budget the most work to spend, in variables visited
+     * @return false if the budget ran out, true if {@link #models()} and
+     *         {@link #painted(int)} hold the counts
+     */
+    public boolean count(long budget) {
+        this.budget = budget;
+        work = 0;
+        cache.clear();
+        models = BigInteger.ZERO;
+        painted = new BigInteger[variables];
+        Arrays.fill(painted, BigInteger.ZERO);
+        if (!ok) {
+            return true;
+        }
+        index();
+        try {
+            for (int c = 0; c < clueCount; c++) {
+                if (!check(c)) {
+                    return true;
+                }
+            }
+            if (!propagate(0)) {
+                return true;
+            }
+            int[][] components = split(all(), variables);
+            Count[] counts = new Count[components.length];
+            models = BigInteger.ONE;
+            for (int p = 0; p < components.length; p++) {
+                counts[p] = count(components[p], 0);
+                models = models.multiply(counts[p].models);
+                if (models.signum() == 0) {
+                    return true;
+                }
+            }
+            for (int v = 0; v < variables; v++) {
+                if (value[v] == 1) {
+                    painted[v] = models;
+                }
+            }
+            for (int p = 0; p < components.length; p++) {
+                BigInteger others = models.divide(counts[p].models);
+                for (int i = 0; i < components[p].length; i++) {
+                    painted[components[p][i]] = counts[p].painted[i].multiply(others);
+                }
+            }
+            return true;
+        } catch (GaveUp e) {
+            return false;
+        } finally {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return the number of models found by the last {@link #count}
+     */
+    public BigInteger models() {
+        return models;
+    }
+
+    /**
+     * @param var a variable, 1..n
+     * @return the number of models that paint it
+     */
+    public BigInteger painted(int var) {
+        return painted[var - 1];
+    }
+
+    private int[] all() {
+        int[] all = new int[variables];
+        for (int v = 0; v < variables; v++) {
+            all[v] = v;
+        }
+        return all;
+    }
+
+    private void index() {
+        varClueStart = new int[variables + 1];
+        for (int i = 0; i < clueStart[clueCount]; i++) {
+            varClueStart[clueVars[i] + 1]++;
+        }
+        for (int v = 0; v < variables; v++) {
+            varClueStart[v + 1] += varClueStart[v];
+        }
+        varClues = new int[varClueStart[variables]];
+        int[] fill = Arrays.copyOf(varClueStart, variables);
+        for (int c = 0; c < clueCount; c++) {
+            for (int i = clueStart[c]; i < clueStart[c + 1]; i++) {
+                varClues[fill[clueVars[i]]++] = c;
+            }
+        }
+        value = new byte[variables];
+        Arrays.fill(value, (byte) -1);
+        cluePainted = new int[clueCount];
+        clueOpen = new int[clueCount];
+        for (int c = 0; c < clueCount; c++) {
+            clueOpen[c] = clueStart[c + 1] - clueStart[c];
+        }
+        trail = new int[variables];
+        trailSize = 0;
+        stamp = new int[variables];
+        clueStamp = new int[clueCount];
+    }
+
+    private void assign(int v, int paint) {
+        value[v] = (byte) paint;
+        trail[trailSize++] = v;
+        for (int i = varClueStart[v]; i < varClueStart[v + 1]; i++) {
+            int c = varClues[i];
+            clueOpen[c]--;
+            cluePainted[c] += paint;
+        }
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int v = trail[--trailSize];
+            int paint = value[v];
+            value[v] = -1;
+            for (int i = varClueStart[v]; i < varClueStart[v + 1]; i++) {
+                int c = varClues[i];
+                clueOpen[c]++;
+                cluePainted[c] -= paint;
+            }
+        }
+    }
+
+    /**
+     * Decides the rest of a clue when its count leaves no choice.
+     *
+     * @return false if the clue can no longer be met
+     */
+    private boolean check(int c) {
+        int need = clueNeed[c] - cluePainted[c];
+        int open = clueOpen[c];
+        if (need < 0 || need > open) {
+            return false;
+        }
+        if (open > 0 && (need == 0 || need == open)) {
+            int paint = need == 0 ? 0 : 1;
+            for (int i = clueStart[c]; i < clueStart[c + 1]; i++) {
+                if (value[clueVars[i]] < 0) {
+                    assign(clueVars[i], paint);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Propagates the variables decided from trail position {@code from} on.
+     *
+     * @return false on a conflict
+     */
+    private boolean propagate(int from) {
+        for (int t = from; t < trailSize; t++) {
+            int v = trail[t];
+            for (int i = varClueStart[v]; i < varClueStart[v + 1]; i++) {
+                if (!check(varClues[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the undecided variables among the first {@code n} of
+     * {@code among} into components, each sorted.
+     */
+    private int[][] split(int[] among, int n) {
+        int mark = ++epoch;
+        int[] queue = new int[n];
+        int[][] components = new int[4][];
+        int found = 0;
+        for (int i = 0; i < n; i++) {
+            int start = among[i];
+            if (value[start] >= 0 || stamp[start] == mark) {
+                continue;
+            }
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            stamp[start] = mark;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int j = varClueStart[v]; j < varClueStart[v + 1]; j++) {
+                    int c = varClues[j];
+                    if (clueOpen[c] == 0 || clueStamp[c] == mark) {
+                        continue;
+                    }
+                    clueStamp[c] = mark;
+                    for (int k = clueStart[c]; k < clueStart[c + 1]; k++) {
+                        int u = clueVars[k];
+                        if (value[u] < 0 && stamp[u] != mark) {
+                            stamp[u] = mark;
+                            queue[tail++] = u;
+                        }
+                    }
+                }
+            }
+            int[] component = Arrays.copyOf(queue, tail);
+            Arrays.sort(component);
+            if (found == components.length) {
+                components = Arrays.copyOf(components, found * 2);
+            }
+            components[found++] = component;
+            work += tail;
+        }
+        return Arrays.copyOf(components, found);
+    }
+
+    /**
+     * Counts one component, all of whose variables are undecided and share
+     * no open clue with any other undecided variable.
+     */
+    private Count count(int[] component, int depth) {
+        if (work > budget || depth > MAX_DEPTH) {
+            throw new GaveUp();
+        }
+        Key key = key(component);
+        Count cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // branch in variable order, so that the rest of the component is
+        // reached again through many assignments of what was decided
+        int branch = component[0];
+        work += component.length;
+
+        BigInteger total = BigInteger.ZERO;
+        BigInteger[] paintedIn = new BigInteger[component.length];
+        Arrays.fill(paintedIn, BigInteger.ZERO);
+        for (int paint = 0; paint <= 1; paint++) {
+            int mark = trailSize;
+            assign(branch, paint);
+            if (propagate(mark)) {
+                int[][] parts = split(component, component.length);
+                Count[] counts = new Count[parts.length];
+                BigInteger ways = BigInteger.ONE;
+                for (int p = 0; p < parts.length && ways.signum() != 0; p++) {
+                    counts[p] = count(parts[p], depth + 1);
+                    ways = ways.multiply(counts[p].models);
+                }
+                if (ways.signum() != 0) {
+                    total = total.add(ways);
+                    for (int t = mark; t < trailSize; t++) { // decided in this branch
+                        int v = trail[t];
+                        if (value[v] == 1) {
+                            int at = Arrays.binarySearch(component, v);
+                            paintedIn[at] = paintedIn[at].add(ways);
+                        }
+                    }
+                    for (int p = 0; p < parts.length; p++) {
+                        BigInteger others = ways.divide(counts[p].models);
+                        for (int i = 0; i < parts[p].length; i++) {
+                            int at = Arrays.binarySearch(component, parts[p][i]);
+                            paintedIn[at] = paintedIn[at].add(counts[p].painted[i].multiply(others));
+                        }
+                    }
+                }
+            }
+            undo(mark);
+        }
+
+        Count count = new Count(total, paintedIn);
+        if (cache.size() >= MAX_CACHE) {
+            cache.clear();
+        }
+        cache.put(key, count);
+        return count;
+    }
+
+    private Key key(int[] component) {
+        int mark = ++epoch;
+        int[] clues = new int[component.length * 9];
+        int n = 0;
+        for (int v : component) {
+            for (int i = varClueStart[v]; i < varClueStart[v + 1]; i++) {
+                int c = varClues[i];
+                if (clueOpen[c] > 0 && clueStamp[c] != mark) {
+                    clueStamp[c] = mark;
+                    clues[n++] = c;
+                }
+            }
+        }
+        Arrays.sort(clues, 0, n);
+        int[] data = Arrays.copyOf(component, component.length + n);
+        for (int i = 0; i < n; i++) {
+            data[component.length + i] = clueNeed[clues[i]] - cluePainted[clues[i]];
+        }
+        return new Key(data);
+    }
+}
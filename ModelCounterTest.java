@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class ModelCounterTest {
+
+    @Test
+    public void testCountsPaintedPerVariable() {
+        ModelCounter counter = new ModelCounter(4);
+        counter.exactly(new int[] { 1, 2, 3 }, 3, 1);
+        counter.exactly(new int[] { 3, 4 }, 2, 1);
+        assertTrue("A small count should fit the budget", counter.count(1000));
+        assertEquals("Either 3 alone, or 4 with one of 1 and 2", BigInteger.valueOf(3), counter.models());
+        assertEquals(BigInteger.ONE, counter.painted(1));
+        assertEquals(BigInteger.ONE, counter.painted(3));
+        assertEquals(BigInteger.valueOf(2), counter.painted(4));
+    }
+
+    @Test
+    public void testIndependentClausesMultiply() {
+        ModelCounter counter = new ModelCounter(60);
+        for (int v = 1; v <= 60; v += 3) {
+            counter.exactly(new int[] { v, v + 1, v + 2 }, 3, 1);
+        }
+        assertTrue("Independent clues should be counted apart", counter.count(1000));
+        assertEquals("Three ways for each of the twenty clues", BigInteger.valueOf(3).pow(20), counter.models());
+        assertEquals(BigInteger.valueOf(3).pow(19), counter.painted(31));
+    }
+
+    @Test
+    public void testContradictionHasNoModel() {
+        ModelCounter counter = new ModelCounter(2);
+        counter.exactly(new int[] { 1, 2 }, 2, 2);
+        counter.exactly(new int[] { 2 }, 1, 0);
+        assertTrue(counter.count(1000));
+        assertEquals(BigInteger.ZERO, counter.models());
+        assertEquals(BigInteger.ZERO, counter.painted(1));
+    }
+
+    @Test
+    public void testMatchesProfileSolver() throws Exception {
+        int seed = 0;
+        for (Game board : PuzzleFixtures.generated(6)) {
+            seed++;
+            Frontier frontier = Frontier.of(board);
+            for (int c = 0; c < frontier.size(); c++) {
+                int[] cells = frontier.cells(c);
+                ModelCounter counter = new ModelCounter(cells.length);
+                int[] window = new int[9];
+                for (int clue : frontier.clues(c)) {
+                    int count = frontier.windowVariables(clue, cells, window);
+                    counter.exactly(window, count, board.getClue(clue));
+                }
+                assertTrue(counter.count(Long.MAX_VALUE));
+                ProfileSolver.Result result = ProfileSolver.solve(frontier, cells, frontier.clues(c), board);
+                assertEquals("Count should match the profile sweep for seed " + seed, result.solutions,
+                        counter.models());
+                for (int i = 0; i < cells.length; i++) {
+                    assertEquals(result.painted(i), counter.painted(i + 1));
+                }
+            }
+        }
+    }
+}
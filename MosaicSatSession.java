@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.logicng.datastructures.Assignment;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.Formula;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+import org.logicng.formulas.Variable;
+import org.logicng.solvers.MiniSat;
+import org.logicng.solvers.SATSolver;
+
+/**
+ * MosaicSatSession.java
+ *
+ * Long-lived MiniSat solver for one board. When the session is created,
+ * every clue that still touches covered cells is encoded once, over those
+ * cells, as an exactly-k sequential counter of its value minus the painted
+ * cells around it; a clue with no covered cell left is only checked. The
+ * cells covered at that point are the variables: as the agents resolve them
+ * they are passed in as assumptions, so the same solver, with the clauses it
+ * has learned so far, answers every call for the board however the agents
+ * have moved in between.
+ *
+ * A clue whose cells have all been resolved since stays in the solver, where
+ * the assumptions satisfy it by unit propagation alone. Rebuilding on every
+ * such change would throw the learned clauses away on nearly every run, so
+ * instead {@link #matches(Game)} asks for a new session once half of the
+ * cells it was built over are resolved: the encoding is then redone over
+ * what is left, and over a whole game the rebuilds cost about as much as the
+ * first one.
+ *
+ * The assumptions are kept from call to call. Cells are only ever resolved,
+ * never covered again, so each call looks only at the cells that were still
+ * covered at the previous one and appends the literals of those resolved
+ * since; a call costs the covered cells, not the whole board.
+ *
+ * A session belongs to one loaded puzzle: once the board is loaded again,
+ * even with the same puzzle, {@link #matches(Game)} is false as well.
+ */
+public final class MosaicSatSession {
+
+    private final FormulaFactory f;
+    private final Game game;
+    private final byte[] clues; // the clues the clauses were built for; the parser allocates new ones per load
+    private final CellVariables variables;
+    private final SATSolver solver;
+    private final List<Literal> assumptions = new ArrayList<>(); // the cells resolved so far
+    private final int[] covered; // the variable cells still covered at the last call, in its first coveredCount
+    private int coveredCount;
+    private final int built; // the number of variable cells when the session was created
+
+    /**
+     * Encodes the clues of the board that still touch covered cells into a
+     * new solver.
+     *
+     * @param f    the factory to create variables and clauses in
+     * @param game the board to solve
+     */
+    public MosaicSatSession(FormulaFactory f, Game game) {
+        this.f = f;
+        this.game = game;
+        this.clues = game.board;
+        this.variables = new CellVariables(f, game.size);
+        this.solver = MiniSat.miniSat(f); // incremental: keeps learned clauses between calls
+
+        List<Formula> clauses = new ArrayList<>();
+        Neighbourhood neighbourhood = game.getNeighbourhood();
+        List<Variable> window = new ArrayList<>(9);
+        for (int cell = 0; cell < clues.length; cell++) {
+            if (clues[cell] == -1) {
+                continue;
+            }
+            int needed = clues[cell] - game.paintedAround(cell); // painted cells already count
+            if (needed < 0) {
+                clauses.add(f.falsum()); // painted past its value
+                continue;
+            }
+            window.clear();
+            for (int offset : neighbourhood.window(cell)) {
+                if (game.getState(cell + offset) == game.COVERED) {
+                    window.add(variables.variable(cell + offset));
+                }
+            }
+            exactly(f, window, needed, clauses); // no covered cell left: true, or false if not met
+        }
+        solver.add(clauses);
+
+        int cells = 0;
+        this.covered = new int[game.getCoveredCount()];
+        // cells away from every clue are never forced and need no variable
+        for (int cell = 0; cell < clues.length; cell++) {
+            if (game.getState(cell) == game.COVERED && game.isNextToClue(cell)) {
+                covered[cells++] = cell;
+            }
+        }
+        this.coveredCount = cells;
+        this.built = cells;
+    }
+
+    /**
+     * @param board a board
+     * @return true if this session was built for the board, the board has not
+     *         been loaded again since, and fewer than half of the cells the
+     *         session was built over have been resolved
+     */
+    public boolean matches(Game board) {
+        if (board != game || board.board != clues) {
+            return false;
+        }
+        assume();
+        return 2 * coveredCount >= built;
+    }
+
+    /**
+     * Solves the clues under the current states of the board.
+     *
+     * @return TRUE if the painted and cleared cells can be completed into a
+     *         solution, FALSE if they cannot
+     */
+    public Tristate solve() {
+        assume();
+        return solver.sat(assumptions);
+    }
+
+    /**
+     * Computes the cells forced by the clues under the current states of the
+     * board, with {@link Backbone}.
+     *
+     * @return the forced literals of the covered cells that lie next to a
+     *         clue, or null if the board cannot be completed into a solution
+     */
+    public List<Literal> backbone() {
+        assume();
+        List<Variable> candidates = new ArrayList<>();
+        for (int i = 0; i < coveredCount; i++) {
+            candidates.add(variables.variable(covered[i]));
+        }
+        return Backbone.of(solver, assumptions, candidates);
+    }
+
+    /**
+     * @return the model of the last satisfiable {@link #solve()}
+     */
+    public Assignment model() {
+        return solver.model();
+    }
+
+    /**
+     * Appends the cells resolved since the last call to the assumptions and
+     * drops them from the covered cells.
+     */
+    private void assume() {
+        int kept = 0;
+        for (int i = 0; i < coveredCount; i++) {
+            int cell = covered[i];
+            int state = game.getState(cell);
+            if (state == game.PAINTED) {
+                assumptions.add(variables.variable(cell));
+            } else if (state == game.CLEARED) {
+                assumptions.add(variables.variable(cell).negate());
+            } else {
+                covered[kept++] = cell;
+            }
+        }
+        coveredCount = kept;
+    }
+
+    /**
+     * @return the cell variables the clauses are written over
+     */
+    public CellVariables variables() {
+        return variables;
+    }
+
+    /**
+     * Adds clauses stating that exactly {@code k} of the given variables are
+     * true, using a sequential counter.
+     *
+     * The counter variable s[i][j] is true exactly when at least j of the first
+     * i variables are true, for j up to k + 1:
+     * s[i][j] is equivalent to s[i-1][j] or (s[i-1][j-1] and x[i]). Asserting
+     * s[n][k] and the negation of s[n][k + 1] then fixes the count. This takes
+     * O(n * k) clauses and auxiliary variables, instead of the C(n, k) terms of
+     * a DNF encoding, and needs no CNF conversion.
+     *
+     * @param f       the factory to create the counter variables in
+     * @param x       the variables to count
+     * @param k       the number of them that must be true
+     * @param clauses where the clauses are added
+     */
+    static void exactly(FormulaFactory f, List<? extends Literal> x, int k, List<Formula> clauses) {
+        int n = x.size();
+        if (k > n) {
+            clauses.add(f.falsum()); // cannot be satisfied
+            return;
+        }
+        if (k == 0 || k == n) {
+            for (Literal literal : x) {
+                clauses.add(k == 0 ? literal.negate() : literal);
+            }
+            return;
+        }
+
+        Variable[][] s = new Variable[n + 1][k + 2];
+        for (int i = 1; i <= n; i++) {
+            Literal xi = x.get(i - 1);
+            for (int j = 1; j <= Math.min(i, k + 1); j++) {
+                s[i][j] = f.newCCVariable();
+                // s[i-1][j] or (s[i-1][j-1] and x) implies s[i][j]
+                if (j <= i - 1) {
+                    clauses.add(f.clause(s[i - 1][j].negate(), s[i][j]));
+                }
+                if (j == 1) {
+                    clauses.add(f.clause(xi.negate(), s[i][j]));
+                } else {
+                    clauses.add(f.clause(s[i - 1][j - 1].negate(), xi.negate(), s[i][j]));
+                }
+                // s[i][j] implies s[i-1][j] or x, and s[i-1][j-1]
+                if (j <= i - 1) {
+                    clauses.add(f.clause(s[i][j].negate(), s[i - 1][j], xi));
+                } else {
+                    clauses.add(f.clause(s[i][j].negate(), xi));
+                }
+                if (j > 1) {
+                    clauses.add(f.clause(s[i][j].negate(), s[i - 1][j - 1]));
+                }
+            }
+        }
+        clauses.add(s[n][k]);
+        if (k + 1 <= n) {
+            clauses.add(s[n][k + 1].negate());
+        }
+    }
+}
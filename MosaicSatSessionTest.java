@@ -0,0 +1,98 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.logicng.datastructures.Tristate;
+import org.logicng.formulas.FormulaFactory;
+import org.logicng.formulas.Literal;
+
+public class MosaicSatSessionTest {
+
+    @Test
+    public void testReusedSessionAgreesWithFreshOne() throws Exception {
+        for (String spec : PuzzleFixtures.generatedSpecs(8)) {
+            Game board = PuzzleFixtures.board(spec);
+            MosaicSatSession session = new MosaicSatSession(new FormulaFactory(), board);
+            assertEquals(Tristate.TRUE, session.solve());
+            session.backbone();
+
+            // resolve every fifth cell as in the solution, one call per move
+            for (int cell = 0; cell < board.size * board.size; cell += 5) {
+                if (board.getSolution(cell / board.size, cell % board.size) == board.PAINTED) {
+                    board.paint(cell);
+                } else {
+                    board.clear(cell);
+                }
+                if (!session.matches(board)) {
+                    session = new MosaicSatSession(new FormulaFactory(), board); // half its cells resolved
+                }
+                MosaicSatSession fresh = new MosaicSatSession(new FormulaFactory(), board);
+                assertEquals("The reused session should follow the move on " + spec,
+                        cells(fresh, fresh.backbone()), cells(session, session.backbone()));
+                assertEquals(Tristate.TRUE, session.solve());
+            }
+        }
+    }
+
+    @Test
+    public void testMoveThatBreaksAClue() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED);
+        MosaicSatSession session = new MosaicSatSession(new FormulaFactory(), board);
+        assertEquals(5, session.backbone().size());
+        board.paint(8); // the centre 1 sees both cells
+        board.paint(0);
+        assertEquals(Tristate.FALSE, session.solve());
+        assertNull(session.backbone());
+        assertNull(new MosaicSatSession(new FormulaFactory(), board).backbone());
+    }
+
+    @Test
+    public void testHalfResolvedSessionIsRebuilt() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED); // 9 covered cells, all next to a clue
+        MosaicSatSession session = new MosaicSatSession(new FormulaFactory(), board);
+        for (int cell : new int[] { 2, 5, 6, 7 }) {
+            board.clear(cell);
+        }
+        assertTrue("Five of nine cells are still covered", session.matches(board));
+        board.clear(8);
+        assertFalse("Four of nine cells are still covered", session.matches(board));
+
+        MosaicSatSession rebuilt = new MosaicSatSession(new FormulaFactory(), board);
+        assertEquals("The top-left window is left, one paint in four cells", 0, rebuilt.backbone().size());
+        board.paint(4);
+        assertTrue(rebuilt.matches(board));
+        assertEquals("The other three cells are cleared", 3, rebuilt.backbone().size());
+    }
+
+    @Test
+    public void testReloadedBoardNeedsNewSession() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED);
+        MosaicSatSession session = new MosaicSatSession(new FormulaFactory(), board);
+        board.paint(0);
+        session.solve();
+        board.setGame(PuzzleFixtures.NESTED); // same clues, every cell covered again
+        assertFalse("The assumptions of the session no longer hold", session.matches(board));
+    }
+
+    /**
+     * @return the forced literals as cell + 1 for paint and -(cell + 1) for
+     *         clear, or null
+     */
+    private static Set<Integer> cells(MosaicSatSession session, List<Literal> forced) {
+        if (forced == null) {
+            return null;
+        }
+        Set<Integer> cells = new TreeSet<>();
+        for (Literal literal : forced) {
+            int cell = session.variables().cell(literal.variable()) + 1;
+            cells.add(literal.phase() ? cell : -cell);
+        }
+        return cells;
+    }
+}
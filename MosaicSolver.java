@@ -0,0 +1,683 @@
+import java.util.Arrays;
+
+/**
+ * MosaicSolver.java
+ *
+ * A conflict-driven solver built for Mosaic clues only. Every constraint is
+ * "exactly k of these (at most 9) cells are painted", so instead of expanding
+ * clues into clauses each clue keeps two counters, its painted and its cleared
+ * cells, updated as cells are assigned and undone on backtracking. A clue
+ * propagates when its painted count reaches k (the rest are cleared) or when
+ * its cleared count leaves exactly k cells (the rest are painted), and fails
+ * when either count goes past that.
+ *
+ * Conflicts are analysed to the first unique implication point over cell
+ * literals, and the learned clauses are kept with two watched literals. A clue
+ * only explains an implication when analysis asks for it, from the cells of
+ * its window that were assigned earlier on the trail. The assignment itself is
+ * held in two bitsets (assigned and painted) indexed by variable.
+ *
+ * Variables are numbered 1..n and literals are written as in DIMACS (v for
+ * painted, -v for cleared), as for the SAT4J agents, so the same
+ * {@link Frontier#windowVariables} numbering and {@link Backbone} probing
+ * apply. All clues are added before the first solve; the solver is then
+ * incremental under assumptions and keeps what it has learned.
+ */
+public final class MosaicSolver {
+
+    private static final int NONE = -1; // no constraint: a decision, or no conflict
+    private static final int RESTART_BASE = 100; // conflicts in a unit run of the Luby sequence
+    private static final double DECAY = 0.95;
+
+    private final int variables;
+
+    // clue c covers clueVars[clueStart[c] .. clueStart[c + 1]), 0-based variables
+    private int[] clueVars = new int[64];
+    private int[] clueStart = new int[17];
+    private int[] clueNeed = new int[16];
+    private int clueCount;
+    private int[] cluePainted; // assigned painted cells of each clue
+    private int[] clueCleared; // assigned cleared cells of each clue
+    private int[] varClueStart; // variable v is in the clues varClues[varClueStart[v] .. varClueStart[v + 1])
+    private int[] varClues;
+
+    // learned clauses, literals 2v (painted) and 2v + 1 (cleared); the first two are watched
+    private int[][] clauses = new int[64][];
+    private int[] clauseLbd = new int[64];
+    private int clauseCount;
+    private int[][] watches;
+    private int[] watchCount;
+    private int maxLearned = 2000;
+
+    private final long[] assigned;
+    private final long[] painted;
+    private final long[] phase; // last value of each variable, tried first on the next decision
+    private final int[] level;
+    private final int[] reason; // NONE, a clause index, or -2 - clue
+    private final int[] position; // index on the trail
+    private final int[] trail;
+    private int trailSize;
+    private int propagated;
+    private final int[] levelStart;
+    private int decisionLevel;
+
+    private final double[] activity;
+    private double increment = 1;
+    private final int[] heap; // variables by activity, highest first
+    private final int[] heapIndex; // -1 when not in the heap
+    private int heapSize;
+
+    private final boolean[] seen;
+    private final int[] learned;
+    private final int[] explanation = new int[9];
+    private final long[] levelSeen;
+
+    private boolean ok = true;
+    private boolean started;
+    private final long[] model;
+    private long conflicts;
+
+    /**
+     * @param variables the number of variables, numbered 1..variables
+     */
+    public MosaicSolver(int variables) {
+        this.variables = variables;
+        int words = (variables + 63) >>> 6;
+        assigned = new long[words];
+        painted = new long[words];
+        phase = new long[words];
+        model = new long[words];
+        level = new int[variables];
+        reason = new int[variables];
+        position = new int[variables];
+        trail = new int[variables];
+        levelStart = new int[variables + 1];
+        activity = new double[variables];
+        heap = new int[variables];
+        heapIndex = new int[variables];
+        seen = new boolean[variables];
+        learned = new int[variables + 1];
+        levelSeen = new long[(variables + 64) >>> 6];
+    }
+
+    /**
+     * Adds a clue: exactly {@code k} of the first {@code count} variables are
+     * true. Must be called before the first solve.
+     *
+     * @param vars  the variables, positive and distinct
+     * @param count the number of variables used
+     * @param k     how many of them are painted
+     */
+    public void exactly(int[] vars, int count, int k) {
+        if (started) {
+            throw new IllegalStateException("clues must be added before solving");
+        }
+        if (k < 0 || k > count) {
+            ok = false; // the clue can no longer be met
+            return;
+        }
+        if (clueCount == clueNeed.length) {
+            clueNeed = Arrays.copyOf(clueNeed, clueCount * 2);
+            clueStart = Arrays.copyOf(clueStart, clueCount * 2 + 1);
+        }
+        int start = clueStart[clueCount];
+        if (start + count > clueVars.length) {
+            clueVars = Arrays.copyOf(clueVars, Math.max(clueVars.length * 2, start + count));
+        }
+        for (int i = 0; i < count; i++) {
+            clueVars[start + i] = vars[i] - 1;
+        }
+        clueNeed[clueCount] = k;
+        clueStart[++clueCount] = start + count;
+    }
+
+    public boolean isSatisfiable() {
+        return isSatisfiable(new int[0], 0);
+    }
+
+    /**
+     * Looks for a model under assumptions. On success the model can be read
+     * with {@link #model(int)} until the next call.
+     *
+     * @param assumptions literals that must hold, v or -v
+     * @param count       the number of assumptions used
+     * @return true if the clues and the assumptions have a model
+     */
+    public boolean isSatisfiable(int[] assumptions, int count) {
+        if (!started) {
+            start();
+        }
+        if (!ok) {
+            return false;
+        }
+        int run = 0;
+        long limit = conflicts + RESTART_BASE;
+        while (true) {
+            int conflict = propagate();
+            if (conflict != NONE) {
+                conflicts++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return false;
+                }
+                learn(conflict);
+                if (conflicts >= limit) { // restart, keeping the learned clauses
+                    backtrack(0);
+                    limit = conflicts + (long) RESTART_BASE * luby(++run);
+                    if (clauseCount > maxLearned) {
+                        reduce();
+                    }
+                }
+                continue;
+            }
+
+            if (decisionLevel < count) { // assumptions take the first levels
+                int literal = literal(assumptions[decisionLevel]);
+                int value = value(literal);
+                if (value < 0) {
+                    backtrack(0);
+                    return false;
+                }
+                levelStart[decisionLevel++] = trailSize;
+                if (value == 0) {
+                    assign(literal, NONE);
+                }
+                continue;
+            }
+
+            int next = pick();
+            if (next < 0) {
+                System.arraycopy(painted, 0, model, 0, model.length);
+                backtrack(0);
+                return true;
+            }
+            levelStart[decisionLevel++] = trailSize;
+            assign(2 * next + ((phase[next >>> 6] & 1L << next) != 0 ? 0 : 1), NONE);
+        }
+    }
+
+    /**
+     * @param var a variable, 1..n
+     * @return its value in the last model found
+     */
+    public boolean model(int var) {
+        int v = var - 1;
+        return (model[v >>> 6] & 1L << v) != 0;
+    }
+
+    /**
+     * @return the number of conflicts so far, over all solves
+     */
+    public long conflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Indexes the clues by variable, fills the activity heap and propagates
+     * the clues on their own.
+     */
+    private void start() {
+        started = true;
+        cluePainted = new int[clueCount];
+        clueCleared = new int[clueCount];
+        varClueStart = new int[variables + 1];
+        for (int i = 0; i < clueStart[clueCount]; i++) {
+            varClueStart[clueVars[i] + 1]++;
+        }
+        for (int v = 0; v < variables; v++) {
+            varClueStart[v + 1] += varClueStart[v];
+        }
+        varClues = new int[varClueStart[variables]];
+        int[] fill = Arrays.copyOf(varClueStart, variables);
+        for (int c = 0; c < clueCount; c++) {
+            for (int i = clueStart[c]; i < clueStart[c + 1]; i++) {
+                varClues[fill[clueVars[i]]++] = c;
+            }
+        }
+        watches = new int[2 * variables][];
+        watchCount = new int[2 * variables];
+        for (int v = 0; v < variables; v++) {
+            activity[v] = varClueStart[v + 1] - varClueStart[v]; // cells under many clues first
+            heapIndex[v] = -1;
+        }
+        for (int v = 0; v < variables; v++) {
+            heapInsert(v);
+        }
+        if (ok) {
+            for (int c = 0; c < clueCount && ok; c++) {
+                ok = check(c) == NONE;
+            }
+            ok = ok && propagate() == NONE;
+        }
+    }
+
+    /**
+     * @return 1 if the literal is true, -1 if false, 0 if unassigned
+     */
+    private int value(int literal) {
+        int v = literal >>> 1;
+        long bit = 1L << v;
+        if ((assigned[v >>> 6] & bit) == 0) {
+            return 0;
+        }
+        return ((painted[v >>> 6] & bit) != 0) == ((literal & 1) == 0) ? 1 : -1;
+    }
+
+    private static int literal(int dimacs) {
+        return dimacs > 0 ? 2 * (dimacs - 1) : 2 * (-dimacs - 1) + 1;
+    }
+
+    private void assign(int literal, int because) {
+        int v = literal >>> 1;
+        long bit = 1L << v;
+        boolean paint = (literal & 1) == 0;
+        assigned[v >>> 6] |= bit;
+        if (paint) {
+            painted[v >>> 6] |= bit;
+        } else {
+            painted[v >>> 6] &= ~bit;
+        }
+        level[v] = decisionLevel;
+        reason[v] = because;
+        position[v] = trailSize;
+        trail[trailSize++] = literal;
+        for (int i = varClueStart[v]; i < varClueStart[v + 1]; i++) {
+            if (paint) {
+                cluePainted[varClues[i]]++;
+            } else {
+                clueCleared[varClues[i]]++;
+            }
+        }
+    }
+
+    private void backtrack(int target) {
+        if (decisionLevel <= target) {
+            return;
+        }
+        for (int i = trailSize - 1; i >= levelStart[target]; i--) {
+            int literal = trail[i];
+            int v = literal >>> 1;
+            long bit = 1L << v;
+            boolean paint = (literal & 1) == 0;
+            assigned[v >>> 6] &= ~bit;
+            if (paint) {
+                phase[v >>> 6] |= bit;
+            } else {
+                phase[v >>> 6] &= ~bit;
+            }
+            for (int j = varClueStart[v]; j < varClueStart[v + 1]; j++) {
+                if (paint) {
+                    cluePainted[varClues[j]]--;
+                } else {
+                    clueCleared[varClues[j]]--;
+                }
+            }
+            if (heapIndex[v] < 0) {
+                heapInsert(v);
+            }
+        }
+        trailSize = levelStart[target];
+        propagated = trailSize;
+        decisionLevel = target;
+    }
+
+    /**
+     * Propagates every assignment on the trail through the clues and the
+     * learned clauses.
+     *
+     * @return the violated constraint, or NONE
+     */
+    private int propagate() {
+        while (propagated < trailSize) {
+            int literal = trail[propagated++];
+            int v = literal >>> 1;
+            for (int i = varClueStart[v]; i < varClueStart[v + 1]; i++) {
+                int conflict = check(varClues[i]);
+                if (conflict != NONE) {
+                    return conflict;
+                }
+            }
+
+            int falsified = literal ^ 1;
+            int[] list = watches[falsified];
+            int count = watchCount[falsified];
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int index = list[i];
+                int[] clause = clauses[index];
+                if (clause[0] == falsified) {
+                    clause[0] = clause[1];
+                    clause[1] = falsified;
+                }
+                if (value(clause[0]) > 0) {
+                    list[kept++] = index;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (value(clause[k]) >= 0) {
+                        clause[1] = clause[k];
+                        clause[k] = falsified;
+                        watch(clause[1], index);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                list[kept++] = index;
+                if (value(clause[0]) < 0) {
+                    while (++i < count) {
+                        list[kept++] = list[i];
+                    }
+                    watchCount[falsified] = kept;
+                    return index;
+                }
+                assign(clause[0], index);
+            }
+            watchCount[falsified] = kept;
+        }
+        return NONE;
+    }
+
+    /**
+     * Checks one clue against its counters and assigns the rest of its cells
+     * when the count is decided.
+     *
+     * @return -2 - clue if the clue is violated, otherwise NONE
+     */
+    private int check(int clue) {
+        int size = clueStart[clue + 1] - clueStart[clue];
+        int need = clueNeed[clue];
+        int paint = cluePainted[clue];
+        int clear = clueCleared[clue];
+        if (paint > need || clear > size - need) {
+            return -2 - clue;
+        }
+        if (paint + clear == size || (paint != need && clear != size - need)) {
+            return NONE;
+        }
+        int rest = paint == need ? 1 : 0; // clear the rest, or paint them
+        for (int i = clueStart[clue]; i < clueStart[clue + 1]; i++) {
+            int v = clueVars[i];
+            if ((assigned[v >>> 6] & 1L << v) == 0) {
+                assign(2 * v + rest, -2 - clue);
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Writes the literals that, all false, imply a variable or make a
+     * constraint fail.
+     *
+     * @param constraint a clause index or -2 - clue
+     * @param implied    the variable implied, or -1 for a conflict
+     * @param out        receives the literals when the constraint is a clue
+     * @return the number of literals written, or -1 for a clause (whose
+     *         literals are read directly)
+     */
+    private int explain(int constraint, int implied, int[] out) {
+        if (constraint >= 0) {
+            return -1;
+        }
+        int clue = -2 - constraint;
+        boolean byPainted; // too many painted cells, or too many cleared ones
+        int before;
+        if (implied >= 0) {
+            byPainted = (painted[implied >>> 6] & 1L << implied) == 0; // cleared because the count was met
+            before = position[implied];
+        } else {
+            byPainted = cluePainted[clue] > clueNeed[clue];
+            before = trailSize;
+        }
+        int count = 0;
+        for (int i = clueStart[clue]; i < clueStart[clue + 1]; i++) {
+            int v = clueVars[i];
+            long bit = 1L << v;
+            if ((assigned[v >>> 6] & bit) != 0 && position[v] < before
+                    && ((painted[v >>> 6] & bit) != 0) == byPainted) {
+                out[count++] = byPainted ? 2 * v + 1 : 2 * v;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Learns a clause from a conflict at the first unique implication point,
+     * backjumps and asserts it.
+     */
+    private void learn(int conflict) {
+        int length = 1;
+        int pending = 0;
+        int index = trailSize - 1;
+        int literal = -1;
+        int constraint = conflict;
+        do {
+            int implied = literal < 0 ? -1 : literal >>> 1;
+            int[] lits;
+            int from;
+            int to;
+            int count = explain(constraint, implied, explanation);
+            if (count < 0) {
+                lits = clauses[constraint];
+                from = implied < 0 ? 0 : 1; // the implied literal is watched first
+                to = lits.length;
+            } else {
+                lits = explanation;
+                from = 0;
+                to = count;
+            }
+            for (int i = from; i < to; i++) {
+                int v = lits[i] >>> 1;
+                if (seen[v] || level[v] == 0) {
+                    continue;
+                }
+                seen[v] = true;
+                bump(v);
+                if (level[v] == decisionLevel) {
+                    pending++;
+                } else {
+                    learned[length++] = lits[i];
+                }
+            }
+            while (!seen[trail[index] >>> 1]) {
+                index--;
+            }
+            literal = trail[index--];
+            seen[literal >>> 1] = false;
+            constraint = reason[literal >>> 1];
+            pending--;
+        } while (pending > 0);
+        learned[0] = literal ^ 1;
+
+        int jump = 0;
+        for (int i = 1; i < length; i++) {
+            int v = learned[i] >>> 1;
+            seen[v] = false;
+            if (level[v] > level[learned[1] >>> 1]) {
+                int swap = learned[1];
+                learned[1] = learned[i];
+                learned[i] = swap;
+            }
+        }
+        if (length > 1) {
+            jump = level[learned[1] >>> 1];
+        }
+        increment /= DECAY;
+
+        int lbd = lbd(length);
+        backtrack(jump);
+        if (length == 1) {
+            assign(learned[0], NONE);
+            return;
+        }
+        if (clauseCount == clauses.length) {
+            clauses = Arrays.copyOf(clauses, clauseCount * 2);
+            clauseLbd = Arrays.copyOf(clauseLbd, clauseCount * 2);
+        }
+        int[] clause = Arrays.copyOf(learned, length);
+        clauses[clauseCount] = clause;
+        clauseLbd[clauseCount] = lbd;
+        watch(clause[0], clauseCount);
+        watch(clause[1], clauseCount);
+        assign(clause[0], clauseCount++);
+    }
+
+    /**
+     * @return the number of distinct decision levels in the learned clause
+     */
+    private int lbd(int length) {
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            int l = level[learned[i] >>> 1];
+            long bit = 1L << l;
+            if ((levelSeen[l >>> 6] & bit) == 0) {
+                levelSeen[l >>> 6] |= bit;
+                distinct++;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            int l = level[learned[i] >>> 1];
+            levelSeen[l >>> 6] &= ~(1L << l);
+        }
+        return distinct;
+    }
+
+    /**
+     * Drops the learned clauses of the worse half by LBD, keeping those that
+     * link at most two levels. Only called at level 0, where no reason clause
+     * is read again.
+     */
+    private void reduce() {
+        int[] order = Arrays.copyOf(clauseLbd, clauseCount);
+        Arrays.sort(order);
+        int cut = Math.max(order[clauseCount / 2], 3);
+        int kept = 0;
+        for (int i = 0; i < clauseCount; i++) {
+            if (clauseLbd[i] < cut || clauses[i].length == 2) {
+                clauses[kept] = clauses[i];
+                clauseLbd[kept++] = clauseLbd[i];
+            }
+        }
+        Arrays.fill(clauses, kept, clauseCount, null);
+        clauseCount = kept;
+        Arrays.fill(watchCount, 0);
+        for (int i = 0; i < clauseCount; i++) {
+            watch(clauses[i][0], i);
+            watch(clauses[i][1], i);
+        }
+        maxLearned += maxLearned / 10;
+    }
+
+    private void watch(int literal, int clause) {
+        int[] list = watches[literal];
+        int count = watchCount[literal];
+        if (list == null) {
+            list = watches[literal] = new int[4];
+        } else if (count == list.length) {
+            list = watches[literal] = Arrays.copyOf(list, count * 2);
+        }
+        list[count] = clause;
+        watchCount[literal] = count + 1;
+    }
+
+    private void bump(int v) {
+        if ((activity[v] += increment) > 1e100) {
+            for (int i = 0; i < variables; i++) {
+                activity[i] *= 1e-100;
+            }
+            increment *= 1e-100;
+        }
+        if (heapIndex[v] >= 0) {
+            heapUp(heapIndex[v]);
+        }
+    }
+
+    /**
+     * @return the unassigned variable with the highest activity, or -1 if
+     *         every variable is assigned
+     */
+    private int pick() {
+        while (heapSize > 0) {
+            int v = heap[0];
+            heapRemoveTop();
+            if ((assigned[v >>> 6] & 1L << v) == 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    private void heapInsert(int v) {
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        heapUp(heapSize++);
+    }
+
+    private void heapRemoveTop() {
+        heapIndex[heap[0]] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            heapDown(0);
+        }
+    }
+
+    private void heapUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void heapDown(int i) {
+        int v = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * @return the i-th term (from 0) of the Luby sequence 1, 1, 2, 1, 1, 2, 4,
+     *         ...
+     */
+    private static int luby(int i) {
+        int size = 1;
+        int exponent = 0;
+        while (size < i + 1) {
+            exponent++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            exponent--;
+            i %= size;
+        }
+        return 1 << exponent;
+    }
+}
@@ -0,0 +1,46 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MosaicSolverTest {
+
+    @Test
+    public void testCountsForceCells() {
+        MosaicSolver solver = new MosaicSolver(4);
+        solver.exactly(new int[] { 1, 2, 3 }, 3, 2);
+        solver.exactly(new int[] { 3, 4 }, 2, 0);
+        assertTrue("Clues should be satisfiable", solver.isSatisfiable());
+        assertArrayEquals("Both clues should force every cell", new int[] { 1, 2, -3, -4 },
+                Backbone.of(solver, new int[0], new int[] { 1, 2, 3, 4 }));
+    }
+
+    @Test
+    public void testOddCycleIsUnsatisfiable() {
+        MosaicSolver solver = new MosaicSolver(3);
+        solver.exactly(new int[] { 1, 2 }, 2, 1);
+        solver.exactly(new int[] { 2, 3 }, 2, 1);
+        solver.exactly(new int[] { 3, 1 }, 2, 1);
+        assertFalse("Three pairs with one painted each cannot be met", solver.isSatisfiable());
+    }
+
+    @Test
+    public void testAssumptionsDoNotStick() {
+        MosaicSolver solver = new MosaicSolver(2);
+        solver.exactly(new int[] { 1, 2 }, 2, 1);
+        assertTrue("Painting the first cell should be possible", solver.isSatisfiable(new int[] { 1 }, 1));
+        assertFalse("The second cell should then be cleared", solver.model(2));
+        assertFalse("Clearing both cells should fail", solver.isSatisfiable(new int[] { -1, -2 }, 2));
+        assertTrue("Clues alone should still be satisfiable", solver.isSatisfiable());
+    }
+
+    @Test
+    public void testAgentSolvesUniquePuzzle() throws Exception {
+        Game board = new Game();
+        board.setGame(new PuzzleGenerator(11, 0.5).generateUnique(20, 2).spec());
+        new AgentC3().run(board, false);
+        assertEquals("A unique puzzle should be solved completely", 3, new AgentA().verify(board, false));
+    }
+}
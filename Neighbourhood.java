@@ -0,0 +1,146 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Neighbourhood.java
+ *
+ * Precomputed 3x3 windows for the cells of a square board, so that the agents
+ * can walk the neighbours of a cell without bounds checks or allocation.
+ *
+ * A window only depends on whether the cell touches the top/bottom row and the
+ * left/right column, so every cell is classified once into one of 16 border
+ * shapes. Each shape keeps its flat cell offsets (row-major, relative to the
+ * centre cell) and the 9-bit mask of the window positions that are on the
+ * board, where bit (dr + 1) * 3 + (dc + 1) stands for the offset (dr, dc).
+ * Instances are immutable and shared between all boards of the same size.
+ */
+public final class Neighbourhood {
+
+    /**
+     * Callback used by {@link #forEachInWindow} and {@link #forEachNeighbour}.
+     */
+    public interface CellVisitor {
+        void visit(int cell);
+    }
+
+    private static final ConcurrentHashMap<Integer, Neighbourhood> CACHE = new ConcurrentHashMap<>();
+
+    // row/column classes: bit 0 = no row above (or column to the left),
+    // bit 1 = no row below (or column to the right)
+    private static final int SHAPES = 16;
+
+    final int size;
+    private final byte[] shapes; // border shape of each cell
+    private final int[][] windows = new int[SHAPES][]; // offsets including the centre
+    private final int[][] neighbours = new int[SHAPES][]; // offsets without the centre
+    private final int[] masks = new int[SHAPES];
+
+    private Neighbourhood(int size) {
+        this.size = size;
+        for (int shape = 0; shape < SHAPES; shape++) {
+            int rowClass = shape >> 2, colClass = shape & 3;
+            int[] window = new int[9];
+            int[] neighbour = new int[8];
+            int w = 0, n = 0, mask = 0;
+            for (int dr = -1; dr <= 1; dr++) {
+                if ((dr == -1 && (rowClass & 1) != 0) || (dr == 1 && (rowClass & 2) != 0)) {
+                    continue; // row outside the board
+                }
+                for (int dc = -1; dc <= 1; dc++) {
+                    if ((dc == -1 && (colClass & 1) != 0) || (dc == 1 && (colClass & 2) != 0)) {
+                        continue; // column outside the board
+                    }
+                    int offset = dr * size + dc;
+                    window[w++] = offset;
+                    if (dr != 0 || dc != 0) {
+                        neighbour[n++] = offset;
+                    }
+                    mask |= 1 << ((dr + 1) * 3 + (dc + 1));
+                }
+            }
+            windows[shape] = Arrays.copyOf(window, w);
+            neighbours[shape] = Arrays.copyOf(neighbour, n);
+            masks[shape] = mask;
+        }
+
+        shapes = new byte[size * size];
+        for (int r = 0; r < size; r++) {
+            int rowClass = edgeClass(r, size);
+            for (int c = 0; c < size; c++) {
+                shapes[r * size + c] = (byte) (rowClass << 2 | edgeClass(c, size));
+            }
+        }
+    }
+
+    private static int edgeClass(int i, int size) {
+        return (i == 0 ? 1 : 0) | (i == size - 1 ? 2 : 0);
+    }
+
+    /**
+     * Returns the shared table for boards of the given size.
+     *
+     * @param size the number of rows (and columns) of the board
+     * @return the neighbourhood table for that size
+     */
+    public static Neighbourhood of(int size) {
+        return CACHE.computeIfAbsent(size, Neighbourhood::new);
+    }
+
+    /**
+     * Returns the offsets of the 3x3 window around a cell, centre included, in
+     * row-major order. Add the cell index to each offset to get the window
+     * cells. The array is shared and must not be modified.
+     *
+     * @param cell the flat index of the centre cell
+     * @return the offsets of the window cells that are on the board
+     */
+    public int[] window(int cell) {
+        return windows[shapes[cell]];
+    }
+
+    /**
+     * Same as {@link #window(int)} but without the centre cell.
+     *
+     * @param cell the flat index of the centre cell
+     * @return the offsets of the neighbours that are on the board
+     */
+    public int[] neighbours(int cell) {
+        return neighbours[shapes[cell]];
+    }
+
+    /**
+     * Returns the 9-bit mask of the window positions that are on the board,
+     * bit (dr + 1) * 3 + (dc + 1) standing for the offset (dr, dc).
+     *
+     * @param cell the flat index of the centre cell
+     * @return the border mask of the cell's window
+     */
+    public int mask(int cell) {
+        return masks[shapes[cell]];
+    }
+
+    /**
+     * Calls the visitor for every cell of the 3x3 window around a cell,
+     * centre included.
+     *
+     * @param cell    the flat index of the centre cell
+     * @param visitor the callback receiving each window cell
+     */
+    public void forEachInWindow(int cell, CellVisitor visitor) {
+        for (int offset : windows[shapes[cell]]) {
+            visitor.visit(cell + offset);
+        }
+    }
+
+    /**
+     * Calls the visitor for every neighbour of a cell, the cell itself excluded.
+     *
+     * @param cell    the flat index of the centre cell
+     * @param visitor the callback receiving each neighbour
+     */
+    public void forEachNeighbour(int cell, CellVisitor visitor) {
+        for (int offset : neighbours[shapes[cell]]) {
+            visitor.visit(cell + offset);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class NeighbourhoodTest {
+
+    @Test
+    public void testInteriorWindow() {
+        Neighbourhood neighbourhood = Neighbourhood.of(4);
+        // cell (1, 1) sees the whole 3x3 window
+        assertArrayEquals("Interior window should have all nine offsets",
+                new int[] { -5, -4, -3, -1, 0, 1, 3, 4, 5 }, neighbourhood.window(5));
+        assertEquals("Interior neighbours should exclude the centre", 8, neighbourhood.neighbours(5).length);
+        assertEquals("Interior mask should have all bits set", 0x1FF, neighbourhood.mask(5));
+    }
+
+    @Test
+    public void testCornerWindow() {
+        Neighbourhood neighbourhood = Neighbourhood.of(4);
+        // bottom-right corner (3, 3) only keeps the up/left part of the window
+        assertArrayEquals("Corner window should be clipped to the board",
+                new int[] { -5, -4, -1, 0 }, neighbourhood.window(15));
+        assertArrayEquals("Corner neighbours should be clipped to the board",
+                new int[] { -5, -4, -1 }, neighbourhood.neighbours(15));
+        assertEquals("Corner mask should only keep the up/left positions", 0b000011011, neighbourhood.mask(15));
+    }
+
+    @Test
+    public void testSingleCellBoard() {
+        Neighbourhood neighbourhood = Neighbourhood.of(1);
+        assertArrayEquals("A single cell only sees itself", new int[] { 0 }, neighbourhood.window(0));
+        assertEquals("A single cell has no neighbours", 0, neighbourhood.neighbours(0).length);
+    }
+
+    @Test
+    public void testVisitorMatchesGameNeighbours() {
+        Game board = new Game();
+        board.setGame(".1*,.1_,.-_;.1_,.1_,.0_;.-_,.0_,.0_");
+        board.paint(0, 0);
+        int[] painted = new int[1];
+        board.getNeighbourhood().forEachNeighbour(board.index(1, 1), cell -> {
+            if (board.getState(cell) == board.PAINTED) {
+                painted[0]++;
+            }
+        });
+        assertEquals("Visitor should see the painted corner", 1, painted[0]);
+        assertEquals("Game should report the same neighbours", 8, board.getNeighborsStates(1, 1).length);
+    }
+}
@@ -1,4 +1,7 @@
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
 /*
  * Starter code
@@ -17,12 +20,18 @@ public class P1main {
 		boolean verbose = false;
 
 		if (args.length < 1) {
-			System.out.println("usage: ./playSweeper.sh <A|B|C1|C2|C3|D> [verbose] [<any other param>]");
+			System.out.println("usage: ./playSweeper.sh <A|B|C1|C2|C3|D> [verbose] [--portfolio] [<any other param>]");
+			System.out.println("       ./playSweeper.sh <A|B|C1|C2|C3|D> batch [<file>] [--threads=N] [--order=input|completion] [--cache=CELLS] [--portfolio]");
 			System.exit(1);
 		}
+		if (args.length > 1 && args[1].equals("batch")) {
+			// one result line per puzzle line, see BatchSolver
+			System.exit(BatchSolver.main(args[0], Arrays.copyOfRange(args, 2, args.length)));
+		}
 		if (args.length > 1 && args[1].equals("verbose")) {
 			verbose = true; // prints additional details if true
 		}
+		boolean portfolio = Arrays.asList(args).contains("--portfolio"); // Agent C2 races several solvers
 		// get specific game
 		System.out.println("Please enter the game spec:");
 		Scanner sc = new Scanner(System.in);
@@ -44,15 +53,81 @@ public class P1main {
 
 		System.out.println("Start!");
 
-		int output = 0;
 		sc.close();
 
+		int output = play(args[0], board, verbose, portfolio);
+
+		board.printBoard();
+		switch (output) {
+
+			/*
+			 * output options:
+			 * 0=!complete && !correct
+			 * 1=complete && !correct
+			 * 2=!complete && correct
+			 * 3=complete && correct
+			 */
+
+			case 0:
+				System.out.println("\nResult: Game not terminated and incorrect\n");
+				break;
+
+			case 1:
+				System.out.println("\nResult: Agent loses: Game terminated but incorrect \n");
+				break;
+
+			case 2:
+				System.out.println("\nResult: Game not terminated but correct \n");
+				break;
+
+			case 3:
+				System.out.println("\nResult: Agent wins: Game terminated and correct \n");
+				break;
+
+			default:
+				System.out.println("\nResult: Unknown\n");
+
+		}
+
+	}
+
+	/**
+	 * Runs the chosen agent (and the agents it builds on) on a board.
+	 *
+	 * @param agent   the agent name, as given on the command line
+	 * @param board   the board to play, modified in place
+	 * @param verbose whether the agents print their moves
+	 * @return the final status code of AgentA (see the output options in main)
+	 */
+	public static int play(String agent, Game board, boolean verbose) {
+		return play(agent, board, verbose, false);
+	}
+
+	/**
+	 * Runs the chosen agent (and the agents it builds on) on a board.
+	 *
+	 * @param agent     the agent name, as given on the command line
+	 * @param board     the board to play, modified in place
+	 * @param verbose   whether the agents print their moves
+	 * @param portfolio whether Agent C2 solves on a {@link SolverPortfolio}
+	 *                  instead of the default solver only
+	 * @return the final status code of AgentA (see the output options in main)
+	 */
+	public static int play(String agent, Game board, boolean verbose, boolean portfolio) {
+		int output = 0;
+
 		AgentA agentA = new AgentA();
 		AgentB agentB = new AgentB();
-		AgentC1 agentC1 = new AgentC1();
-		AgentC2 agentC2 = new AgentC2();
+		AgentC1 agentC1 = new AgentC1(AgentC1.Encoding.SEQUENTIAL_COUNTER, true); // only forced cells
+		AgentC2 agentC2 = new AgentC2(true);
+		AgentC3 agentC3 = new AgentC3(true);
+		AgentD agentD = new AgentD();
+		// C1 stays on its incremental session, which keeps its learned clauses
+		// across the runs of playWithGuesses; split into components it would
+		// build fresh solvers on every run
+		agentC2.setDecompose(true); // independent frontier components in parallel
 
-		switch (args[0]) {
+		switch (agent) {
 
 			case "A":
 				output = agentA.run(board, verbose);
@@ -68,9 +143,8 @@ public class P1main {
 				agentB.run(board, verbose);
 				output = agentA.run(board, verbose);
 				if (output == 2) {
-					agentC1.run(board, verbose);
+					output = playWithGuesses(agentC1::run, agentA, board, verbose);
 				}
-				output = agentA.run(board, verbose);
 
 				break;
 
@@ -78,53 +152,93 @@ public class P1main {
 				agentB.run(board, verbose);
 				output = agentA.run(board, verbose);
 				if (output == 2) {
-					agentC2.run(board, verbose);
+					agentC2.setPortfolio(portfolio);
+					try {
+						output = playWithGuesses(agentC2::run, agentA, board, verbose);
+					} finally {
+						agentC2.setPortfolio(false); // stops the portfolio threads
+					}
 				}
-				output = agentA.run(board, verbose);
 
 				break;
 
 			case "C3":
+				agentB.run(board, verbose);
+				output = agentA.run(board, verbose);
+				if (output == 2) {
+					output = playWithGuesses(agentC3::run, agentA, board, verbose);
+				}
 
 				break;
 
 			case "D":
-				break;
-
-		}
-
-		board.printBoard();
-		switch (output) {
-
-			/*
-			 * output options:
-			 * 0=!complete && !correct
-			 * 1=complete && !correct
-			 * 2=!complete && correct
-			 * 3=complete && correct
-			 */
-
-			case 0:
-				System.out.println("\nResult: Game not terminated and incorrect\n");
-				break;
-
-			case 1:
-				System.out.println("\nResult: Agent loses: Game terminated but incorrect \n");
-				break;
-
-			case 2:
-				System.out.println("\nResult: Game not terminated but correct \n");
-				break;
+				agentB.run(board, verbose);
+				output = agentA.run(board, verbose);
+				if (output == 2) {
+					agentD.run(board, verbose);
+				}
+				output = agentA.run(board, verbose);
 
-			case 3:
-				System.out.println("\nResult: Agent wins: Game terminated and correct \n");
 				break;
 
-			default:
-				System.out.println("\nResult: Unknown\n");
-
 		}
+		return output;
+	}
 
+	/**
+	 * Runs a C agent until the board is complete. A run that leaves the board
+	 * incomplete has applied every cell the clues force, so the solutions of
+	 * what is left are counted (see {@link PaintProbability}). The cells that
+	 * are certain are all set at once; then the safest cell is set to its
+	 * likelier value, and only the component it lay in is counted again. The
+	 * agent runs again only after a guess in a component too large to count.
+	 * A cell that some solution paints can be painted without making the board
+	 * unsolvable, so every guess keeps the board correct.
+	 *
+	 * @param agent   the agent's run method
+	 * @param agentA  checks the board after every step
+	 * @param board   the board to play, modified in place
+	 * @param verbose whether the agents print their moves
+	 * @return the final status code of AgentA
+	 */
+	private static int playWithGuesses(BiConsumer<Game, Boolean> agent, AgentA agentA, Game board,
+			boolean verbose) {
+		agent.accept(board, verbose);
+		int output = agentA.run(board, verbose);
+		if (output != 2) {
+			return output;
+		}
+		try {
+			PaintProbability probability = PaintProbability.of(board);
+			while (output == 2) {
+				Frontier.apply(probability.certain(), board, verbose); // forced, or seen by no clue
+				output = agentA.run(board, verbose);
+				int move = probability.guess();
+				if (output != 2 || move == 0) {
+					break;
+				}
+				int cell = Math.abs(move) - 1;
+				double painted = probability.painted(cell);
+				if (move > 0) {
+					board.paint(cell);
+				} else {
+					board.clear(cell);
+				}
+				if (verbose) {
+					System.out.println("Guessing: " + (move > 0 ? "painting" : "clearing") + " cell ["
+							+ cell / board.size + ", " + cell % board.size + "]" + (Double.isNaN(painted) ? ""
+									: " (painted in " + Math.round(painted * 100) + "% of solutions)"));
+				}
+				if (!probability.isCounted(cell)) {
+					agent.accept(board, verbose); // the guess lay in a component too large to count
+				}
+				probability.recount(cell);
+				output = agentA.run(board, verbose);
+			}
+		} catch (ExecutionException e) {
+			System.err.println("Error during model counting: " + e.getCause());
+		}
+		return output;
 	}
 
 }
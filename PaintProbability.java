@@ -0,0 +1,226 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * PaintProbability.java
+ *
+ * For every covered cell next to a clue, the fraction of the solutions of the
+ * board that paint it, counted exactly with {@link ModelCounter} on each
+ * component of the frontier (see {@link Frontier}). A fraction of 0 or 1 is a
+ * cell that every solution sets the same way; anything in between says how
+ * safe a guess on the cell is when no cell is forced any more.
+ *
+ * Components share no clue, so a move in one component leaves the fractions
+ * of every other component as they were: after a guess only the pieces of
+ * the guessed component are counted again (see {@link #recount}).
+ *
+ * A component whose count needs more work than the budget is not counted; it
+ * still contributes one cell of one of its solutions (see {@link MosaicSolver})
+ * so that a guess can always be made.
+ */
+public final class PaintProbability {
+
+    private static final long BUDGET = 1L << 22; // work per component, in variables visited
+
+    private final Game board;
+    private final double[] painted; // per cell, NaN if not counted
+    private final byte[] forced; // per cell, 1 if every solution paints it, -1 if none does
+    private final int[] component; // per cell, the count it was taken in, -1 if none
+    private final AtomicInteger counts = new AtomicInteger();
+    private final List<Integer> modelMoves = new ArrayList<>(); // a move from a solution of each uncounted component
+    private boolean unsolvable;
+
+    private PaintProbability(Game board) {
+        this.board = board;
+        int cells = board.size * board.size;
+        this.painted = new double[cells];
+        this.forced = new byte[cells];
+        this.component = new int[cells];
+        Arrays.fill(painted, Double.NaN);
+        Arrays.fill(component, -1);
+    }
+
+    /**
+     * Counts the solutions of every component of the frontier of a board.
+     *
+     * @param board the board, which must not change until this returns
+     * @return the probabilities
+     * @throws ExecutionException if a component fails to count
+     */
+    public static PaintProbability of(Game board) throws ExecutionException {
+        PaintProbability probability = new PaintProbability(board);
+        probability.count(cells -> true);
+        return probability;
+    }
+
+    /**
+     * Counts again the component a cell lay in, after moves on that
+     * component. Components share no clue, so the others keep their
+     * fractions; what is left of this one may now split into several
+     * components. The components that were not counted are all taken as one
+     * and tried again.
+     *
+     * @param cell a cell of the component that changed
+     * @throws ExecutionException if a component fails to count
+     */
+    public void recount(int cell) throws ExecutionException {
+        int id = component[cell];
+        if (id < 0) {
+            modelMoves.clear();
+            count(cells -> component[cells[0]] < 0);
+            return;
+        }
+        boolean[] inComponent = new boolean[component.length];
+        for (int other = 0; other < component.length; other++) {
+            if (component[other] == id) {
+                inComponent[other] = true;
+                painted[other] = Double.NaN;
+                forced[other] = 0;
+                component[other] = -1;
+            }
+        }
+        count(cells -> inComponent[cells[0]]); // every piece lies inside the old component
+    }
+
+    /**
+     * Counts the components of the current frontier accepted by
+     * {@code which} into {@code painted}.
+     */
+    private void count(Predicate<int[]> which) throws ExecutionException {
+        Frontier frontier = Frontier.of(board);
+        if (frontier.solve((cells, clues) -> which.test(cells) ? countComponent(frontier, cells, clues) : new int[0])
+                == null) {
+            unsolvable = true;
+        }
+    }
+
+    /**
+     * Counts one component, with variable i + 1 standing for cells[i].
+     *
+     * @return no moves, or null if the component has no solution
+     */
+    private int[] countComponent(Frontier frontier, int[] cells, int[] clues) {
+        ModelCounter counter = new ModelCounter(cells.length);
+        int[] window = new int[9];
+        for (int clue : clues) {
+            int count = frontier.windowVariables(clue, cells, window);
+            counter.exactly(window, count, board.getClue(clue) - board.paintedAround(clue));
+        }
+        if (counter.count(BUDGET)) {
+            if (counter.models().signum() == 0) {
+                return null;
+            }
+            int id = counts.getAndIncrement();
+            BigDecimal models = new BigDecimal(counter.models());
+            for (int i = 0; i < cells.length; i++) {
+                BigInteger paintedIn = counter.painted(i + 1);
+                // exact, since a fraction close to 1 can round to 1.0
+                forced[cells[i]] = (byte) (paintedIn.signum() == 0 ? -1
+                        : paintedIn.equals(counter.models()) ? 1 : 0);
+                painted[cells[i]] = new BigDecimal(paintedIn).divide(models, MathContext.DECIMAL64).doubleValue();
+                component[cells[i]] = id;
+            }
+            return new int[0];
+        }
+
+        MosaicSolver solver = new MosaicSolver(cells.length);
+        for (int clue : clues) {
+            int count = frontier.windowVariables(clue, cells, window);
+            solver.exactly(window, count, board.getClue(clue) - board.paintedAround(clue));
+        }
+        if (!solver.isSatisfiable()) {
+            return null;
+        }
+        synchronized (modelMoves) {
+            modelMoves.add(solver.model(1) ? cells[0] + 1 : -(cells[0] + 1));
+        }
+        return new int[0];
+    }
+
+    /**
+     * @param cell a cell of the board
+     * @return the fraction of the solutions that paint the cell, or NaN if it
+     *         was not counted: it is not covered, no clue sees it, or its
+     *         component was too hard to count
+     */
+    public double painted(int cell) {
+        return painted[cell];
+    }
+
+    /**
+     * @param cell a cell of the board
+     * @return true if the cell has a fraction, so that {@link #recount} can
+     *         follow a move on it
+     */
+    public boolean isCounted(int cell) {
+        return component[cell] >= 0;
+    }
+
+    /**
+     * @return true if some component of the frontier has no solution
+     */
+    public boolean isUnsolvable() {
+        return unsolvable;
+    }
+
+    /**
+     * Collects the covered cells that can be set without guessing: those that
+     * every solution paints or clears, and those that no clue sees, which can
+     * take either value and are cleared. Setting them changes no fraction.
+     *
+     * @return cell + 1 to paint a cell and -(cell + 1) to clear it
+     */
+    public int[] certain() {
+        int[] moves = new int[painted.length];
+        int count = 0;
+        for (int cell = 0; cell < painted.length; cell++) {
+            if (board.getState(cell) != board.COVERED) {
+                continue;
+            }
+            if (!board.isNextToClue(cell) || forced[cell] < 0) {
+                moves[count++] = -(cell + 1);
+            } else if (forced[cell] > 0) {
+                moves[count++] = cell + 1;
+            }
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    /**
+     * Picks the safest guess on the board: the covered counted cell whose
+     * fraction is furthest from one half, set to its likelier value. Without
+     * one, a cell from a solution of a component that was not counted.
+     *
+     * @return cell + 1 to paint a cell and -(cell + 1) to clear it, or 0 if
+     *         there is no guess to make: the board is unsolvable or every
+     *         covered cell is certain (see {@link #certain})
+     */
+    public int guess() {
+        if (unsolvable) {
+            return 0;
+        }
+        int best = -1;
+        for (int cell = 0; cell < painted.length; cell++) {
+            if (board.getState(cell) == board.COVERED && !Double.isNaN(painted[cell])
+                    && (best < 0 || Math.abs(painted[cell] - 0.5) > Math.abs(painted[best] - 0.5))) {
+                best = cell;
+            }
+        }
+        if (best >= 0) {
+            return painted[best] > 0.5 ? best + 1 : -(best + 1);
+        }
+        for (int move : modelMoves) {
+            if (board.getState(Math.abs(move) - 1) == board.COVERED) {
+                return move;
+            }
+        }
+        return 0;
+    }
+}
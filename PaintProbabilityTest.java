@@ -0,0 +1,47 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PaintProbabilityTest {
+
+    @Test
+    public void testFractionsOfNestedClues() throws Exception {
+        PaintProbability probability = PaintProbability.of(PuzzleFixtures.board(PuzzleFixtures.NESTED));
+        assertFalse(probability.isUnsolvable());
+        assertEquals("Each top-left cell is painted in one of four solutions", 0.25, probability.painted(0), 0);
+        assertEquals("No solution paints the bottom-right cell", 0, probability.painted(8), 0);
+        assertArrayEquals("Cells outside the top-left window are certain", new int[] { -3, -6, -7, -8, -9 },
+                probability.certain());
+    }
+
+    @Test
+    public void testGuessThenRecount() throws Exception {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED);
+        PaintProbability probability = PaintProbability.of(board);
+        Frontier.apply(probability.certain(), board, false);
+        assertEquals("The likelier value of a 1 in 4 cell is cleared", -1, probability.guess());
+        board.clear(0);
+        probability.recount(0);
+        assertEquals("Three cells are left for the one paint", 1.0 / 3, probability.painted(4), 1e-12);
+        assertEquals("Three cells are left for the one paint", 1.0 / 3, probability.painted(1), 1e-12);
+        assertEquals("A cell that was set has no fraction", Double.NaN, probability.painted(0), 0);
+    }
+
+    @Test
+    public void testCellsSeenByNoClueAreCleared() throws Exception {
+        Game board = PuzzleFixtures.board(".1_,.-_,.-_,.-_;.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_;.-_,.-_,.-_,.-_");
+        int[] certain = PaintProbability.of(board).certain();
+        assertEquals("Every cell but the four next to the clue is free", 12, certain.length);
+        assertTrue("The far corner is cleared", certain[certain.length - 1] == -16);
+    }
+
+    @Test
+    public void testContradictionIsUnsolvable() throws Exception {
+        PaintProbability probability = PaintProbability.of(PuzzleFixtures.board(PuzzleFixtures.CONTRADICTION));
+        assertTrue(probability.isUnsolvable());
+        assertEquals("No guess on an unsolvable board", 0, probability.guess());
+    }
+}
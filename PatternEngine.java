@@ -0,0 +1,162 @@
+/**
+ * PatternEngine.java
+ *
+ * Generalized arc consistency over the clues of a board, with each clue kept
+ * as the set of paint patterns of its window that are still possible (see
+ * {@link WindowPatterns}). A clue starts from the precomputed patterns of its
+ * value and border shape, restricted to the cells already painted or cleared.
+ * Two clues whose windows overlap then keep only the patterns whose paint on
+ * the shared cells the other clue still allows, and a cell on which every
+ * remaining pattern of some clue agrees is painted or cleared, which in turn
+ * restricts every clue that can see it.
+ *
+ * This finds every move that a single clue or a pair of overlapping clues can
+ * justify, which includes the single-clue rules and the pair rules of
+ * {@link AgentB}, using only word operations on the pattern sets. Clues are
+ * taken from a worklist, so a clue is only looked at again after one of its
+ * neighbours lost patterns.
+ */
+public class PatternEngine {
+
+    private static final int WORDS = WindowPatterns.WORDS;
+
+    private long[] allowed = new long[0]; // WORDS longs per cell, used for the open clues
+    private boolean[] open = new boolean[0]; // clues still taking part
+
+    /**
+     * Paints and clears the cells that the clues force, pairwise.
+     *
+     * @param board   the game board, updated with the cells found
+     * @param verbose whether to print every cell that is updated
+     * @return false if some clue has no pattern left, i.e. the board has no
+     *         solution
+     */
+    public boolean run(Game board, boolean verbose) {
+        int cells = board.size * board.size;
+        if (open.length != cells) {
+            allowed = new long[cells * WORDS];
+            open = new boolean[cells];
+        }
+        IntWorklist pending = new IntWorklist(cells);
+        Neighbourhood neighbourhood = board.getNeighbourhood();
+
+        for (int cell = 0; cell < cells; cell++) {
+            int clue = board.getClue(cell);
+            open[cell] = clue != -1 && board.coveredAround(cell) > 0;
+            if (!open[cell]) {
+                continue;
+            }
+            int onBoard = neighbourhood.mask(cell);
+            System.arraycopy(WindowPatterns.valid(clue, onBoard), 0, allowed, cell * WORDS, WORDS);
+            for (int p = 0; p < 9; p++) {
+                if ((onBoard >> p & 1) == 0) {
+                    continue;
+                }
+                int state = board.getState(cell + (p / 3 - 1) * board.size + p % 3 - 1);
+                if (state != board.COVERED) {
+                    WindowPatterns.restrict(allowed, cell * WORDS, p, state == board.PAINTED);
+                }
+            }
+            if (WindowPatterns.isEmpty(allowed, cell * WORDS)) {
+                return false;
+            }
+            pending.add(cell);
+        }
+
+        while (!pending.isEmpty()) {
+            int cell = pending.poll();
+            if (!open[cell]) {
+                continue;
+            }
+            if (!decide(board, cell, pending, verbose) || !reviseNeighbours(board, cell, pending)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies the cells on which every pattern of a clue agrees.
+     *
+     * @return false if a clue that sees one of those cells is left without
+     *         patterns
+     */
+    private boolean decide(Game board, int clue, IntWorklist pending, boolean verbose) {
+        int onBoard = board.getNeighbourhood().mask(clue);
+        for (int p = 0; p < 9; p++) {
+            if ((onBoard >> p & 1) == 0) {
+                continue;
+            }
+            int cell = clue + (p / 3 - 1) * board.size + p % 3 - 1;
+            if (board.getState(cell) != board.COVERED) {
+                continue;
+            }
+            int value = WindowPatterns.agreed(allowed, clue * WORDS, p);
+            if (value == 0) {
+                continue;
+            }
+            if (value > 0) {
+                board.paint(cell);
+            } else {
+                board.clear(cell);
+            }
+            if (verbose) {
+                System.out.println((value > 0 ? "Painting" : "Clearing") + " cell [" + cell / board.size + ", "
+                        + cell % board.size + "]");
+            }
+            // every clue that can see the cell drops the patterns that disagree
+            for (int offset : board.getNeighbourhood().window(cell)) {
+                int other = cell + offset;
+                if (!open[other]) {
+                    continue;
+                }
+                int position = (cell / board.size - other / board.size + 1) * 3 + cell % board.size
+                        - other % board.size + 1;
+                if (WindowPatterns.restrict(allowed, other * WORDS, position, value > 0)) {
+                    if (WindowPatterns.isEmpty(allowed, other * WORDS)) {
+                        return false;
+                    }
+                    pending.add(other);
+                }
+                if (board.coveredAround(other) == 0) {
+                    open[other] = false; // decided, and every pattern left agrees with the board
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restricts every open clue whose window overlaps this clue's window to
+     * the paint this clue allows on the shared cells.
+     *
+     * @return false if a clue is left without patterns
+     */
+    private boolean reviseNeighbours(Game board, int clue, IntWorklist pending) {
+        if (!open[clue]) {
+            return true;
+        }
+        int size = board.size;
+        int row = clue / size, col = clue % size;
+        for (int dr = -2; dr <= 2; dr++) {
+            for (int dc = -2; dc <= 2; dc++) {
+                int r = row + dr, c = col + dc;
+                if ((dr == 0 && dc == 0) || r < 0 || r >= size || c < 0 || c >= size) {
+                    continue;
+                }
+                int other = clue + dr * size + dc;
+                if (!open[other]) {
+                    continue;
+                }
+                long shared = WindowPatterns.sharedPaint(allowed, clue * WORDS, dr, dc);
+                if (WindowPatterns.restrictShared(allowed, other * WORDS, -dr, -dc, shared)) {
+                    if (WindowPatterns.isEmpty(allowed, other * WORDS)) {
+                        return false;
+                    }
+                    pending.add(other);
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PatternEngineTest {
+
+    @Test
+    public void testTableCountsPatterns() {
+        assertEquals("An interior clue of 3 should allow C(9, 3) patterns", 84, count(WindowPatterns.valid(3, 0x1FF)));
+        assertEquals("A corner clue of 2 should allow C(4, 2) patterns", 6,
+                count(WindowPatterns.valid(2, Neighbourhood.of(4).mask(15))));
+        long[] set = WindowPatterns.valid(1, 0x1FF).clone();
+        WindowPatterns.restrict(set, 0, 4, true);
+        assertEquals("Painting the centre should leave one pattern", 1, count(set));
+        assertEquals("That pattern should clear the corner", -1, WindowPatterns.agreed(set, 0, 0));
+    }
+
+    @Test
+    public void testNestedCluesClearTheRest() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED);
+        assertTrue("Clues should be consistent", new PatternEngine().run(board, false));
+        assertEquals("Only the top-left window should stay covered", 4, board.getCoveredCount());
+        assertEquals("Cells outside the top-left window should be cleared", board.CLEARED, board.getState(2, 2));
+        assertEquals("Cells outside the top-left window should be cleared", board.CLEARED, board.getState(0, 2));
+    }
+
+    @Test
+    public void testContradictionIsFound() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.CONTRADICTION);
+        assertFalse("A full corner next to an empty centre cannot be met", new PatternEngine().run(board, false));
+    }
+
+    private static int count(long[] set) {
+        AtomicInteger count = new AtomicInteger();
+        WindowPatterns.forEach(set, 0, pattern -> count.incrementAndGet());
+        return count.get();
+    }
+}
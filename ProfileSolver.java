@@ -0,0 +1,404 @@
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * ProfileSolver.java
+ *
+ * Dynamic programming over row profiles (a transfer-matrix method). A clue
+ * only links three consecutive rows, so sweeping the covered cells of a
+ * frontier component in row-major order, a cell only matters until the last
+ * clue that sees it has all its cells decided. The state after each cell is
+ * the paint of the cells that still matter, at most a little over two rows of
+ * the component, and states that agree on those cells are merged with their
+ * solution counts added up. A component wider than it is tall is swept column
+ * by column instead, so the profile runs across its short side.
+ *
+ * Every state is checked against the clues it touches as soon as a cell is
+ * decided: no clue may have more paint than its value, nor too few covered
+ * cells left to reach it. States are stored as packed bit profiles in one
+ * open-addressing hash table per cell. A forward sweep counts the solutions
+ * reaching each state, a backward sweep counts the ways to finish from it,
+ * and the two give, for every cell, the number of solutions that paint it.
+ * A cell is forced when that number is 0 or the total.
+ *
+ * The work is linear in the number of cells times the number of states per
+ * profile, so long, narrow components (and boards that the presolve has cut
+ * into bands) are solved without search. A component whose profile grows past
+ * {@link #MAX_STATES} states after some cell is given up and left to a SAT
+ * agent.
+ */
+public final class ProfileSolver {
+
+    /**
+     * Most states in the profile after any one cell.
+     */
+    public static final int MAX_STATES = 1 << 13;
+
+    /**
+     * The solutions of one component.
+     */
+    public static final class Result {
+        /**
+         * The covered cells of the component, in increasing order.
+         */
+        public final int[] cells;
+        /**
+         * The number of ways to paint the cells that meet every clue.
+         */
+        public final BigInteger solutions;
+        private final BigInteger[] painted;
+
+        private Result(int[] cells, BigInteger solutions, BigInteger[] painted) {
+            this.cells = cells;
+            this.solutions = solutions;
+            this.painted = painted;
+        }
+
+        /**
+         * @param i the position of a cell in {@link #cells}
+         * @return the number of solutions that paint it
+         */
+        public BigInteger painted(int i) {
+            return painted[i];
+        }
+
+        /**
+         * @return the cells that every solution sets the same way, cell + 1 to
+         *         paint a cell and -(cell + 1) to clear it, or null if there
+         *         is no solution
+         */
+        public int[] forced() {
+            if (solutions.signum() == 0) {
+                return null;
+            }
+            int[] moves = new int[cells.length];
+            int count = 0;
+            for (int i = 0; i < cells.length; i++) {
+                if (painted[i].signum() == 0) {
+                    moves[count++] = -(cells[i] + 1);
+                } else if (painted[i].equals(solutions)) {
+                    moves[count++] = cells[i] + 1;
+                }
+            }
+            return Arrays.copyOf(moves, count);
+        }
+    }
+
+    private ProfileSolver() {
+    }
+
+    /**
+     * Counts the ways to complete a board: the product of the solutions of
+     * its frontier components, times two for every covered cell that no clue
+     * sees.
+     *
+     * @param board the board
+     * @return the number of solutions, or null if a component is too wide
+     */
+    public static BigInteger count(Game board) {
+        Frontier frontier = Frontier.of(board);
+        if (frontier.isContradicted()) {
+            return BigInteger.ZERO;
+        }
+        BigInteger total = BigInteger.ONE;
+        int constrained = 0;
+        for (int c = 0; c < frontier.size(); c++) {
+            Result result = solve(frontier, frontier.cells(c), frontier.clues(c), board);
+            if (result == null) {
+                return null;
+            }
+            total = total.multiply(result.solutions);
+            constrained += result.cells.length;
+        }
+        return total.shiftLeft(board.getCoveredCount() - constrained);
+    }
+
+    /**
+     * Sweeps one frontier component.
+     *
+     * @param frontier the frontier of the board
+     * @param cells    the covered cells of the component, in increasing order
+     * @param clues    the clues that constrain them
+     * @param board    the board, which must not change until this returns
+     * @return the solutions of the component, or null if its profile grows
+     *         past {@link #MAX_STATES} states
+     */
+    public static Result solve(Frontier frontier, int[] cells, int[] clues, Game board) {
+        return new Sweep(frontier, cells, clues, board).run();
+    }
+
+    /**
+     * One component laid out for the sweep: its cells numbered in sweep order
+     * and every clue as a need over those numbers.
+     */
+    private static final class Sweep {
+        private final int[] cells;
+        private final int count; // cells in the component
+        private final int[] order; // sweep position -> index in cells
+        private final int[][] clueVars; // sweep positions of the covered cells of each clue, increasing
+        private final int[] clueNeed;
+        private final int[][] cluesOf; // clues that see each position
+        private final int[][] retired; // positions that stop mattering once each position is decided
+        private final int width; // slots in a profile
+        private final int words; // longs in a profile
+
+        Sweep(Frontier frontier, int[] cells, int[] clues, Game board) {
+            this.cells = cells;
+            this.count = cells.length;
+            int size = board.size;
+            int top = Integer.MAX_VALUE, bottom = 0, left = Integer.MAX_VALUE, right = 0;
+            for (int cell : cells) {
+                top = Math.min(top, cell / size);
+                bottom = Math.max(bottom, cell / size);
+                left = Math.min(left, cell % size);
+                right = Math.max(right, cell % size);
+            }
+            boolean byColumn = right - left > bottom - top;
+            Integer[] sorted = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = i;
+            }
+            if (byColumn) {
+                Arrays.sort(sorted, (a, b) -> Integer.compare(cells[a] % size * size + cells[a] / size,
+                        cells[b] % size * size + cells[b] / size));
+            }
+            order = new int[count];
+            int[] position = new int[count];
+            for (int p = 0; p < count; p++) {
+                order[p] = sorted[p];
+                position[sorted[p]] = p;
+            }
+
+            clueVars = new int[clues.length][];
+            clueNeed = new int[clues.length];
+            int[] seenBy = new int[count];
+            int[] window = new int[9];
+            int span = 1;
+            int[] lastUse = new int[count];
+            for (int c = 0; c < clues.length; c++) {
+                int n = frontier.windowVariables(clues[c], cells, window);
+                int[] vars = new int[n];
+                for (int i = 0; i < n; i++) {
+                    vars[i] = position[window[i] - 1];
+                    seenBy[vars[i]]++;
+                }
+                Arrays.sort(vars);
+                clueVars[c] = vars;
+                clueNeed[c] = board.getClue(clues[c]) - board.paintedAround(clues[c]);
+                if (n > 0) {
+                    span = Math.max(span, vars[n - 1] - vars[0] + 1);
+                    for (int v : vars) {
+                        lastUse[v] = Math.max(lastUse[v], vars[n - 1]);
+                    }
+                }
+            }
+            cluesOf = new int[count][];
+            for (int p = 0; p < count; p++) {
+                cluesOf[p] = new int[seenBy[p]];
+                seenBy[p] = 0;
+            }
+            for (int c = 0; c < clues.length; c++) {
+                for (int v : clueVars[c]) {
+                    cluesOf[v][seenBy[v]++] = c;
+                }
+            }
+            int[] retiring = new int[count];
+            for (int p = 0; p < count; p++) {
+                retiring[lastUse[p]]++;
+            }
+            retired = new int[count][];
+            for (int p = 0; p < count; p++) {
+                retired[p] = new int[retiring[p]];
+                retiring[p] = 0;
+            }
+            for (int p = 0; p < count; p++) {
+                retired[lastUse[p]][retiring[lastUse[p]]++] = p;
+            }
+            width = span; // a position is retired before the one `span` later takes its slot
+            words = (width + 63) >>> 6;
+        }
+
+        Result run() {
+            for (int need : clueNeed) {
+                if (need < 0) {
+                    return new Result(cells, BigInteger.ZERO, zeros());
+                }
+            }
+            // layers[p + 1] holds the profiles after position p is decided
+            Layer[] layers = new Layer[count + 1];
+            layers[0] = new Layer(words);
+            layers[0].insert(new long[words], 0).forward = BigInteger.ONE;
+            long[] next = new long[words];
+            for (int p = 0; p < count; p++) {
+                Layer from = layers[p];
+                Layer to = new Layer(words);
+                for (int s = 0; s < from.size; s++) {
+                    for (int paint = 0; paint <= 1; paint++) {
+                        if (!step(from.keys, s * words, p, paint == 1, next)) {
+                            continue;
+                        }
+                        Layer.State state = to.insert(next, 0);
+                        state.forward = state.forward.add(from.states[s].forward);
+                    }
+                }
+                if (to.size > MAX_STATES) {
+                    return null;
+                }
+                layers[p + 1] = to;
+            }
+
+            Layer last = layers[count];
+            BigInteger solutions = last.size == 0 ? BigInteger.ZERO : last.states[0].forward;
+            for (int s = 0; s < last.size; s++) {
+                last.states[s].backward = BigInteger.ONE;
+            }
+            BigInteger[] painted = zeros();
+            for (int p = count - 1; p >= 0; p--) {
+                Layer from = layers[p];
+                Layer to = layers[p + 1];
+                for (int s = 0; s < from.size; s++) {
+                    Layer.State state = from.states[s];
+                    state.backward = BigInteger.ZERO;
+                    for (int paint = 0; paint <= 1; paint++) {
+                        if (!step(from.keys, s * words, p, paint == 1, next)) {
+                            continue;
+                        }
+                        int found = to.find(next, 0);
+                        if (found < 0) {
+                            continue;
+                        }
+                        BigInteger ways = to.states[found].backward;
+                        state.backward = state.backward.add(ways);
+                        if (paint == 1) {
+                            painted[order[p]] = painted[order[p]].add(state.forward.multiply(ways));
+                        }
+                    }
+                }
+                layers[p + 1] = null; // no longer needed
+            }
+            return new Result(cells, solutions, painted);
+        }
+
+        /**
+         * Decides one position in a profile.
+         *
+         * @param keys   the profiles of the previous layer
+         * @param offset where the profile starts
+         * @param p      the position decided
+         * @param paint  its value
+         * @param out    receives the next profile
+         * @return false if a clue can no longer be met
+         */
+        private boolean step(long[] keys, int offset, int p, boolean paint, long[] out) {
+            System.arraycopy(keys, offset, out, 0, words);
+            int slot = p % width;
+            if (paint) {
+                out[slot >>> 6] |= 1L << slot;
+            }
+            for (int c : cluesOf[p]) {
+                int[] vars = clueVars[c];
+                int paintedCells = 0;
+                int decided = 0;
+                for (int v : vars) {
+                    if (v > p) {
+                        break;
+                    }
+                    decided++;
+                    int at = v % width;
+                    paintedCells += (int) (out[at >>> 6] >>> at) & 1;
+                }
+                if (paintedCells > clueNeed[c] || paintedCells + vars.length - decided < clueNeed[c]) {
+                    return false;
+                }
+            }
+            for (int v : retired[p]) {
+                int at = v % width;
+                out[at >>> 6] &= ~(1L << at);
+            }
+            return true;
+        }
+
+        private BigInteger[] zeros() {
+            BigInteger[] zeros = new BigInteger[count];
+            Arrays.fill(zeros, BigInteger.ZERO);
+            return zeros;
+        }
+    }
+
+    /**
+     * The distinct profiles after one position, in an open-addressing hash
+     * table over their packed bits.
+     */
+    private static final class Layer {
+        static final class State {
+            BigInteger forward = BigInteger.ZERO; // ways to reach the profile
+            BigInteger backward; // ways to finish from it
+        }
+
+        final int words;
+        long[] keys;
+        State[] states;
+        int size;
+        private int[] buckets; // state index + 1, 0 when free
+
+        Layer(int words) {
+            this.words = words;
+            keys = new long[4 * words];
+            states = new State[4];
+            buckets = new int[8];
+        }
+
+        int find(long[] key, int offset) {
+            int mask = buckets.length - 1;
+            for (int b = hash(key, offset) & mask;; b = (b + 1) & mask) {
+                int s = buckets[b] - 1;
+                if (s < 0) {
+                    return -1;
+                }
+                if (Arrays.equals(keys, s * words, (s + 1) * words, key, offset, offset + words)) {
+                    return s;
+                }
+            }
+        }
+
+        State insert(long[] key, int offset) {
+            int found = find(key, offset);
+            if (found >= 0) {
+                return states[found];
+            }
+            if (size == states.length) {
+                keys = Arrays.copyOf(keys, 2 * size * words);
+                states = Arrays.copyOf(states, 2 * size);
+            }
+            if (2 * (size + 1) > buckets.length) {
+                buckets = new int[buckets.length * 2];
+                int mask = buckets.length - 1;
+                for (int s = 0; s < size; s++) {
+                    int b = hash(keys, s * words) & mask;
+                    while (buckets[b] != 0) {
+                        b = (b + 1) & mask;
+                    }
+                    buckets[b] = s + 1;
+                }
+            }
+            System.arraycopy(key, offset, keys, size * words, words);
+            State state = new State();
+            states[size] = state;
+            int mask = buckets.length - 1;
+            int b = hash(key, offset) & mask;
+            while (buckets[b] != 0) {
+                b = (b + 1) & mask;
+            }
+            buckets[b] = ++size;
+            return state;
+        }
+
+        private int hash(long[] key, int offset) {
+            long h = 0;
+            for (int w = 0; w < words; w++) {
+                h = (h + key[offset + w]) * 0x9E3779B97F4A7C15L;
+            }
+            return (int) (h ^ h >>> 32);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class ProfileSolverTest {
+
+    @Test
+    public void testCountsNestedClues() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED);
+        assertEquals("One paint in the top-left window and none elsewhere", BigInteger.valueOf(4),
+                ProfileSolver.count(board));
+
+        Game single = PuzzleFixtures.board(".-_,.-_,.-_;.-_,.1_,.-_;.-_,.-_,.-_");
+        assertEquals("Any one of the nine cells can be painted", BigInteger.valueOf(9), ProfileSolver.count(single));
+    }
+
+    @Test
+    public void testForcedCellsOfComponent() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.NESTED);
+        Frontier frontier = Frontier.of(board);
+        ProfileSolver.Result result = ProfileSolver.solve(frontier, frontier.cells(0), frontier.clues(0), board);
+        assertEquals("Each top-left cell should be painted in one solution", BigInteger.ONE, result.painted(0));
+        assertArrayEquals("Cells outside the top-left window should be cleared", new int[] { -3, -6, -7, -8, -9 },
+                result.forced());
+    }
+
+    @Test
+    public void testContradictionHasNoSolution() {
+        Game board = PuzzleFixtures.board(PuzzleFixtures.CONTRADICTION);
+        assertEquals("A full corner next to an empty centre has no solution", BigInteger.ZERO,
+                ProfileSolver.count(board));
+        Frontier frontier = Frontier.of(board);
+        assertNull("No solution means no forced cells",
+                ProfileSolver.solve(frontier, frontier.cells(0), frontier.clues(0), board).forced());
+    }
+
+    @Test
+    public void testCountMatchesEnumeration() throws Exception {
+        int seed = 0;
+        for (Game board : PuzzleFixtures.generated(4)) {
+            seed++;
+            assertEquals("Profile count should match enumeration for seed " + seed,
+                    BigInteger.valueOf(enumerate(board)), ProfileSolver.count(board));
+        }
+    }
+
+    private static long enumerate(Game board) {
+        int cells = board.size * board.size;
+        long solutions = 0;
+        for (int paint = 0; paint < 1 << cells; paint++) {
+            boolean met = true;
+            for (int clue = 0; clue < cells && met; clue++) {
+                if (board.getClue(clue) == -1) {
+                    continue;
+                }
+                int painted = 0;
+                for (int offset : board.getNeighbourhood().window(clue)) {
+                    painted += paint >> (clue + offset) & 1;
+                }
+                met = painted == board.getClue(clue);
+            }
+            solutions += met ? 1 : 0;
+        }
+        return solutions;
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * PuzzleFixtures.java
+ *
+ * Boards shared by the tests.
+ */
+final class PuzzleFixtures {
+
+    /**
+     * The top-left clue window lies inside the centre one, so both 1s are met
+     * by one paint in the top-left window and every other cell is cleared:
+     * four solutions.
+     */
+    static final String NESTED = ".1_,.-_,.-_;.-_,.1_,.-_;.-_,.-_,.-_";
+
+    /**
+     * A full corner next to an empty centre, which no painting can meet.
+     */
+    static final String CONTRADICTION = ".4_,.-_,.-_;.-_,.0_,.-_;.-_,.-_,.-_";
+
+    /**
+     * The number of boards returned by {@link #generated}, seeded 1..BOARDS.
+     */
+    static final int BOARDS = 5;
+
+    private PuzzleFixtures() {
+    }
+
+    /**
+     * @param spec a game spec
+     * @return a new board loaded with it
+     */
+    static Game board(String spec) {
+        Game board = new Game();
+        board.setGame(spec);
+        return board;
+    }
+
+    /**
+     * Generates random boards with the clues hidden that leave no other
+     * solution within radius 1, so they usually have several solutions.
+     *
+     * @param size the number of rows and columns
+     * @return the boards for the seeds 1 to {@link #BOARDS}, in order
+     * @throws ExecutionException if hiding the clues fails
+     */
+    static List<Game> generated(int size) throws ExecutionException {
+        List<Game> boards = new ArrayList<>();
+        for (String spec : generatedSpecs(size)) {
+            boards.add(board(spec));
+        }
+        return boards;
+    }
+
+    /**
+     * @param size the number of rows and columns
+     * @return the specs of the boards of {@link #generated}, for tests that
+     *         load the same board more than once
+     * @throws ExecutionException if hiding the clues fails
+     */
+    static List<String> generatedSpecs(int size) throws ExecutionException {
+        List<String> specs = new ArrayList<>();
+        for (long seed = 1; seed <= BOARDS; seed++) {
+            PuzzleGenerator generator = new PuzzleGenerator(seed, 0.5);
+            PuzzleGenerator.Puzzle puzzle = generator.generate(size);
+            generator.hideClues(puzzle, 1);
+            specs.add(puzzle.spec());
+        }
+        return specs;
+    }
+
+    /**
+     * @param board a board
+     * @return true if no clue sees more painted cells than its value, or
+     *         fewer painted and covered ones; unlike
+     *         {@link Game#getViolatedCount} this also catches too much paint
+     */
+    static boolean isConsistent(Game board) {
+        for (int cell = 0; cell < board.size * board.size; cell++) {
+            int clue = board.getClue(cell);
+            if (clue != -1 && (board.paintedAround(cell) > clue
+                    || board.paintedAround(cell) + board.coveredAround(cell) < clue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * PuzzleFormatException.java
+ *
+ * Thrown by {@link PuzzleParser} when a game spec is malformed. Carries the
+ * position of the offending character so that errors in large spec files can
+ * be located without re-reading the input.
+ */
+public class PuzzleFormatException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+    private final int row;
+    private final int column;
+
+    /**
+     * @param message a description of what was expected
+     * @param offset  the character offset of the error in the input
+     * @param row     the board row being parsed
+     * @param column  the cell (column) being parsed within that row
+     */
+    public PuzzleFormatException(String message, long offset, int row, int column) {
+        super(message + " at offset " + offset + " (row " + row + ", cell " + column + ")");
+        this.offset = offset;
+        this.row = row;
+        this.column = column;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+}
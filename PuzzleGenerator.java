@@ -0,0 +1,655 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * PuzzleGenerator.java
+ *
+ * Makes random puzzles of any size in the spec format read by
+ * {@link Game#setGame}, for scaling runs and stress tests. The same seed, size
+ * and density always give the same puzzle, whatever the number of threads.
+ *
+ * A puzzle starts from a random hidden board, with every cell covered and
+ * every clue shown. Clues can then be hidden for as long as the puzzle stays
+ * uniquely solvable, asking SAT4J, with one exactly-k constraint per clue,
+ * whether any other board fits a window of the puzzle:
+ * <ul>
+ * <li>each clue is hidden if nothing else fits a small window around it once
+ * it is gone, with the outside of the window fixed to the hidden board;</li>
+ * <li>a small window misses other solutions that reach beyond it, so tiles of
+ * the board are then searched for other solutions, each of which is ruled
+ * out by showing a hidden clue it breaks (or revealing a cell, if it breaks
+ * none);</li>
+ * <li>finally every tile is proved to have no other solution, on windows
+ * around it that grow until the proof holds.</li>
+ * </ul>
+ * Windows that share no clue are handled together on the common fork-join
+ * pool. The proof dominates the cost, which grows faster than the board: a
+ * 300x300 puzzle takes minutes on one core.
+ */
+public final class PuzzleGenerator {
+
+    private static final int TIMEOUT = 3600; // seconds per check
+    private static final int TILE = 32; // side of the tiles searched in parallel
+
+    /**
+     * A puzzle: its hidden board, the clues it shows and the cells it
+     * starts with uncovered, all indexed row by row.
+     */
+    public static final class Puzzle {
+        public final int size;
+        public final boolean[] painted;
+        public final boolean[] shown;
+        public final boolean[] revealed;
+        private final int[] clues;
+
+        private Puzzle(int size, boolean[] painted) {
+            this.size = size;
+            this.painted = painted;
+            this.shown = new boolean[size * size];
+            this.revealed = new boolean[size * size];
+            this.clues = clues(size, painted);
+            Arrays.fill(shown, true);
+        }
+
+        /**
+         * @return the number of clues shown
+         */
+        public int shownClues() {
+            int count = 0;
+            for (boolean clue : shown) {
+                count += clue ? 1 : 0;
+            }
+            return count;
+        }
+
+        /**
+         * @return the spec of the puzzle
+         */
+        public String spec() {
+            StringBuilder spec = new StringBuilder(size * size * 4);
+            for (int r = 0; r < size; r++) {
+                if (r > 0) {
+                    spec.append(';');
+                }
+                appendRow(r, spec);
+            }
+            return spec.toString();
+        }
+
+        /**
+         * Writes the spec as one line, a row at a time, so that huge boards
+         * are never held as a single string.
+         *
+         * @param out where to write
+         */
+        public void write(PrintStream out) {
+            StringBuilder row = new StringBuilder(size * 4);
+            for (int r = 0; r < size; r++) {
+                row.setLength(0);
+                if (r > 0) {
+                    row.append(';');
+                }
+                appendRow(r, row);
+                out.append(row);
+            }
+            out.append('\n');
+        }
+
+        private void appendRow(int r, StringBuilder out) {
+            for (int c = 0; c < size; c++) {
+                int cell = r * size + c;
+                if (c > 0) {
+                    out.append(',');
+                }
+                char paint = painted[cell] ? '*' : '_';
+                out.append(revealed[cell] ? paint : '.');
+                out.append(shown[cell] ? (char) ('0' + clues[cell]) : '-');
+                out.append(paint);
+            }
+        }
+    }
+
+    private final long seed;
+    private final double density;
+
+    /**
+     * @param seed    the seed of the random boards
+     * @param density the probability that a cell is painted
+     */
+    public PuzzleGenerator(long seed, double density) {
+        this.seed = seed;
+        this.density = density;
+    }
+
+    /**
+     * Command line entry: {@code <size> [--seed=S] [--density=P] [--unique]
+     * [--radius=R] [--count=N]}. Prints one spec per line, for seeds S to
+     * S + N - 1, ready to be piped into batch mode.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: java PuzzleGenerator <size> [--seed=S] [--density=P] [--unique] [--radius=R]"
+                    + " [--count=N]");
+            System.exit(1);
+        }
+        int size = Integer.parseInt(args[0]);
+        long seed = 0;
+        double density = 0.5;
+        boolean unique = false;
+        int radius = 2;
+        int count = 1;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--density=")) {
+                density = Double.parseDouble(arg.substring("--density=".length()));
+            } else if (arg.equals("--unique")) {
+                unique = true;
+            } else if (arg.startsWith("--radius=")) {
+                radius = Integer.parseInt(arg.substring("--radius=".length()));
+            } else if (arg.startsWith("--count=")) {
+                count = Integer.parseInt(arg.substring("--count=".length()));
+            } else {
+                System.err.println("Unknown option: " + arg);
+                System.exit(1);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            PuzzleGenerator generator = new PuzzleGenerator(seed + i, density);
+            Puzzle puzzle = unique ? generator.generateUnique(size, radius) : generator.generate(size);
+            puzzle.write(System.out);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * @param size the number of rows and columns
+     * @return a random puzzle with every clue shown
+     */
+    public Puzzle generate(int size) {
+        Random random = new Random(seed);
+        boolean[] painted = new boolean[size * size];
+        for (int cell = 0; cell < painted.length; cell++) {
+            painted[cell] = random.nextDouble() < density;
+        }
+        return new Puzzle(size, painted);
+    }
+
+    /**
+     * @param size   the number of rows and columns
+     * @param radius the radius of the window each clue is checked in before
+     *               it is hidden
+     * @return a random puzzle with clues hidden, whose hidden board is its
+     *         only solution
+     * @throws ExecutionException if a check fails
+     */
+    public Puzzle generateUnique(int size, int radius) throws ExecutionException {
+        Puzzle puzzle = generate(size);
+        hideClues(puzzle, radius);
+        makeUnique(puzzle);
+        return puzzle;
+    }
+
+    /**
+     * Hides every clue that leaves no other solution within the given radius
+     * once it is gone. A check reads the clues within radius + 1 of its own,
+     * so clues radius + 2 apart in both directions are checked together in
+     * one round; the rounds take the offsets in a seeded random order.
+     *
+     * @param puzzle the puzzle, updated in place
+     * @param radius the radius of the window each clue is checked in
+     * @throws ExecutionException if a check fails
+     */
+    public void hideClues(Puzzle puzzle, int radius) throws ExecutionException {
+        int size = puzzle.size;
+        int stride = Math.min(radius + 2, size);
+        int[] offsets = new int[stride * stride];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = i;
+        }
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        for (int i = offsets.length - 1; i > 0; i--) { // Fisher-Yates
+            int j = random.nextInt(i + 1);
+            int swap = offsets[i];
+            offsets[i] = offsets[j];
+            offsets[j] = swap;
+        }
+
+        boolean[] hide = new boolean[size * size];
+        for (int offset : offsets) {
+            int firstRow = offset / stride;
+            int firstCol = offset % stride;
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int r = firstRow; r < size; r += stride) {
+                int row = r;
+                tasks.add(() -> {
+                    ISolver solver = SolverFactory.newDefault();
+                    for (int c = firstCol; c < size; c += stride) {
+                        int clue = row * size + c;
+                        if (puzzle.shown[clue]) {
+                            Window window = new Window(puzzle, row - radius, c - radius, row + radius, c + radius,
+                                    false);
+                            solver.reset();
+                            hide[clue] = window.isUniqueWithout(clue, solver);
+                        }
+                    }
+                    return null;
+                });
+            }
+            run(tasks);
+            // the tasks only set this round's clues, each in its own row
+            for (int cell = 0; cell < hide.length; cell++) {
+                if (hide[cell]) {
+                    puzzle.shown[cell] = false;
+                    hide[cell] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Shows hidden clues, or reveals cells, until the hidden board is the
+     * only solution of the puzzle. Other solutions are first searched for
+     * within tiles of the board, with the outside fixed to the hidden board,
+     * and ruled out. Then every tile is proved unique: a tile is unique if no
+     * other solution of a window around it, whose outside is left free,
+     * differs inside the tile. A solution of the window may still not extend
+     * to the whole board, so when the proof fails, the window is searched
+     * with its outside fixed and the proof tried again, on a window twice as
+     * wide if need be, up to the whole board. Windows that share no clue are
+     * handled together on the common fork-join pool.
+     *
+     * @param puzzle the puzzle, updated in place
+     * @return the number of clues shown and cells revealed
+     * @throws ExecutionException if a search fails
+     */
+    public static int makeUnique(Puzzle puzzle) throws ExecutionException {
+        int size = puzzle.size;
+        int tiles = (size - 1) / TILE + 1; // per side
+        int changes = 0;
+        if (tiles > 1) {
+            // two passes, the second over tiles straddling the borders of the first
+            for (int shift = 0; shift < TILE; shift += TILE / 2) {
+                changes += repair(puzzle, tiles + 1, -shift);
+            }
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int tile = 0; tile < tiles * tiles; tile++) {
+            pending.add(tile);
+        }
+        for (int margin = TILE; !pending.isEmpty(); margin *= 2) {
+            pending = unproved(puzzle, tiles, pending, margin);
+            if (pending.isEmpty()) {
+                break;
+            }
+            // windows this many tiles apart are at least 4 cells apart, so they share no clue
+            int spacing = (TILE + 2 * margin + 4 + TILE - 1) / TILE;
+            for (int colour = 0; colour < spacing * spacing; colour++) {
+                List<Callable<Integer>> tasks = new ArrayList<>();
+                for (int tile : pending) {
+                    int row = tile / tiles;
+                    int col = tile % tiles;
+                    if (row % spacing * spacing + col % spacing == colour) {
+                        Window window = window(puzzle, row, col, margin, false);
+                        tasks.add(() -> window.makeUnique());
+                    }
+                }
+                for (int windowChanges : run(tasks)) {
+                    changes += windowChanges;
+                }
+            }
+            pending = unproved(puzzle, tiles, pending, margin);
+        }
+        return changes;
+    }
+
+    /**
+     * Searches the tiles of the board, shifted by the given number of cells,
+     * for other solutions and rules them out. Tiles of one colour are a tile
+     * apart, so they share no clue and are searched together.
+     */
+    private static int repair(Puzzle puzzle, int tiles, int shift) throws ExecutionException {
+        int changes = 0;
+        for (int colour = 0; colour < 4; colour++) {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int row = colour / 2; row < tiles; row += 2) {
+                for (int col = colour % 2; col < tiles; col += 2) {
+                    int top = shift + row * TILE;
+                    int left = shift + col * TILE;
+                    if (top >= puzzle.size || left >= puzzle.size) {
+                        continue;
+                    }
+                    Window tile = new Window(puzzle, top, left, top + TILE - 1, left + TILE - 1, false);
+                    tasks.add(() -> tile.makeUnique());
+                }
+            }
+            for (int tileChanges : run(tasks)) {
+                changes += tileChanges;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * @return the tiles that cannot be proved unique with the given margin
+     */
+    private static List<Integer> unproved(Puzzle puzzle, int tiles, List<Integer> candidates, int margin)
+            throws ExecutionException {
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int tile : candidates) {
+            Window window = window(puzzle, tile / tiles, tile % tiles, margin, true);
+            int top = tile / tiles * TILE;
+            int left = tile % tiles * TILE;
+            tasks.add(() -> window.isUniqueIn(top, left, top + TILE - 1, left + TILE - 1));
+        }
+        List<Boolean> proved = run(tasks);
+        List<Integer> remaining = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!proved.get(i)) {
+                remaining.add(candidates.get(i));
+            }
+        }
+        return remaining;
+    }
+
+    private static Window window(Puzzle puzzle, int row, int col, int margin, boolean free) {
+        int top = row * TILE;
+        int left = col * TILE;
+        return new Window(puzzle, top - margin, left - margin, top + TILE - 1 + margin, left + TILE - 1 + margin,
+                free);
+    }
+
+    /**
+     * Checks a puzzle over the whole board.
+     *
+     * @param puzzle the puzzle
+     * @return true if its hidden board is its only solution
+     * @throws TimeoutException if the solver runs out of time
+     */
+    public static boolean isUnique(Puzzle puzzle) throws TimeoutException {
+        return new Window(puzzle, 0, 0, puzzle.size - 1, puzzle.size - 1, false)
+                .isUniqueIn(0, 0, puzzle.size - 1, puzzle.size - 1);
+    }
+
+    private static <T> List<T> run(List<Callable<T>> tasks) throws ExecutionException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+        return results;
+    }
+
+    /**
+     * A rectangle of a puzzle, as a SAT instance over its covered cells. The
+     * cells outside are either fixed to the hidden board, so that any
+     * solution of the window is a solution of the puzzle, or free, so that
+     * the window has every solution of the puzzle among its own (the clues
+     * reaching outside are then left out). Cell (r, c) of the board is
+     * variable (r - top) * width + (c - left) + 1.
+     */
+    private static final class Window {
+        private final Puzzle puzzle;
+        private final Neighbourhood neighbourhood;
+        private final int top;
+        private final int left;
+        private final int bottom;
+        private final int right;
+        private final int width;
+        private final boolean free;
+
+        Window(Puzzle puzzle, int top, int left, int bottom, int right, boolean free) {
+            this.puzzle = puzzle;
+            this.neighbourhood = Neighbourhood.of(puzzle.size);
+            this.top = Math.max(0, top);
+            this.left = Math.max(0, left);
+            this.bottom = Math.min(puzzle.size - 1, bottom);
+            this.right = Math.min(puzzle.size - 1, right);
+            this.width = this.right - this.left + 1;
+            this.free = free;
+        }
+
+        /**
+         * @return the variable of a cell, or 0 if the cell is not one of the
+         *         covered cells of the window
+         */
+        int variable(int cell) {
+            int row = cell / puzzle.size;
+            int col = cell % puzzle.size;
+            if (row < top || row > bottom || col < left || col > right || puzzle.revealed[cell]) {
+                return 0;
+            }
+            return (row - top) * width + (col - left) + 1;
+        }
+
+        /**
+         * @param top    the first row of the part that must differ
+         * @param left   its first column
+         * @param bottom its last row
+         * @param right  its last column
+         * @return true if no solution of the window differs from the hidden
+         *         board in the given part of it
+         */
+        boolean isUniqueIn(int top, int left, int bottom, int right) throws TimeoutException {
+            ISolver solver = SolverFactory.newDefault();
+            try {
+                load(solver, -1, top, left, bottom, right);
+            } catch (ContradictionException e) {
+                return true;
+            }
+            return !solver.isSatisfiable();
+        }
+
+        /**
+         * @param hidden the clue to leave out
+         * @return true if no solution of the window differs from the hidden
+         *         board once the clue is gone
+         */
+        boolean isUniqueWithout(int hidden, ISolver solver) throws TimeoutException {
+            try {
+                load(solver, hidden, top, left, bottom, right);
+            } catch (ContradictionException e) {
+                return true;
+            }
+            return !solver.isSatisfiable();
+        }
+
+        /**
+         * Loads the shown clues of the window, except one, and asks for some
+         * covered cell of a part of the window to differ from the hidden
+         * board.
+         */
+        private void load(ISolver solver, int hidden, int partTop, int partLeft, int partBottom, int partRight)
+                throws ContradictionException {
+            int size = puzzle.size;
+            ConstraintBuffer constraints = new ConstraintBuffer();
+            int[] literals = new int[Math.max(9, (bottom - top + 1) * width)];
+            for (int r = Math.max(0, top - 1); r <= Math.min(size - 1, bottom + 1); r++) {
+                for (int c = Math.max(0, left - 1); c <= Math.min(size - 1, right + 1); c++) {
+                    int clue = r * size + c;
+                    if (!puzzle.shown[clue] || clue == hidden || free && !encloses(clue)) {
+                        continue;
+                    }
+                    int count = clueLiterals(clue, literals);
+                    if (count > 0) {
+                        constraints.exactly(literals, count, residual(clue));
+                    }
+                }
+            }
+            int count = 0;
+            for (int r = Math.max(top, partTop); r <= Math.min(bottom, partBottom); r++) {
+                for (int c = Math.max(left, partLeft); c <= Math.min(right, partRight); c++) {
+                    int variable = variable(r * size + c);
+                    if (variable != 0) {
+                        literals[count++] = puzzle.painted[r * size + c] ? -variable : variable;
+                    }
+                }
+            }
+            constraints.clause(literals, count);
+            solver.setTimeout(TIMEOUT);
+            solver.newVar((bottom - top + 1) * width);
+            constraints.addTo(solver);
+        }
+
+        /**
+         * Rules out every other solution of the window, which must have its
+         * outside fixed. Each round asks an incremental solver for one; it
+         * differs from the hidden board in regions that share no clue window,
+         * each of which could be undone on its own, so every region is ruled
+         * out with the first hidden clue it breaks, or if it breaks none, by
+         * revealing its first cell.
+         *
+         * @return the number of clues shown and cells revealed
+         */
+        int makeUnique() throws TimeoutException {
+            int size = puzzle.size;
+            int height = bottom - top + 1;
+            ISolver solver = SolverFactory.newDefault();
+            boolean[] model = new boolean[height * width]; // differs from the hidden board
+            boolean[] seen = new boolean[height * width];
+            int[] region = new int[height * width];
+            int[] literals = new int[9];
+            int changes = 0;
+            try {
+                load(solver, -1, top, left, bottom, right);
+                while (solver.isSatisfiable()) {
+                    for (int i = 0; i < model.length; i++) {
+                        int cell = (top + i / width) * size + left + i % width;
+                        model[i] = variable(cell) != 0 && solver.model(i + 1) != puzzle.painted[cell];
+                        seen[i] = false;
+                    }
+                    for (int start = 0; start < model.length; start++) {
+                        if (seen[start] || !model[start]) {
+                            continue;
+                        }
+                        // the differing cells linked to this one through clue windows
+                        int fix = -1;
+                        int length = 0;
+                        region[length++] = start;
+                        seen[start] = true;
+                        for (int i = 0; i < length; i++) {
+                            int row = region[i] / width;
+                            int col = region[i] % width;
+                            int cell = (top + row) * size + left + col;
+                            for (int offset : neighbourhood.window(cell)) {
+                                int clue = cell + offset;
+                                if (!puzzle.shown[clue] && (fix == -1 || clue < fix)
+                                        && paintedAround(clue, model) != puzzle.clues[clue]) {
+                                    fix = clue;
+                                }
+                            }
+                            for (int r = Math.max(0, row - 2); r <= Math.min(height - 1, row + 2); r++) {
+                                for (int c = Math.max(0, col - 2); c <= Math.min(width - 1, col + 2); c++) {
+                                    int next = r * width + c;
+                                    if (!seen[next] && model[next]) {
+                                        seen[next] = true;
+                                        region[length++] = next;
+                                    }
+                                }
+                            }
+                        }
+
+                        changes++;
+                        if (fix != -1) {
+                            puzzle.shown[fix] = true;
+                            int count = clueLiterals(fix, literals);
+                            solver.addExactly(new VecInt(Arrays.copyOf(literals, count)), residual(fix));
+                        } else {
+                            int cell = (top + start / width) * size + left + start % width;
+                            int variable = start + 1;
+                            puzzle.revealed[cell] = true;
+                            solver.addClause(new VecInt(new int[] { puzzle.painted[cell] ? variable : -variable }));
+                        }
+                    }
+                }
+            } catch (ContradictionException e) {
+                // no other solution is left
+            }
+            return changes;
+        }
+
+        /**
+         * @return true if the whole window of a clue is inside this window
+         */
+        private boolean encloses(int clue) {
+            int row = clue / puzzle.size;
+            int col = clue % puzzle.size;
+            return (row > top || row == 0) && (row < bottom || row == puzzle.size - 1)
+                    && (col > left || col == 0) && (col < right || col == puzzle.size - 1);
+        }
+
+        private int clueLiterals(int clue, int[] out) {
+            int count = 0;
+            for (int offset : neighbourhood.window(clue)) {
+                int variable = variable(clue + offset);
+                if (variable != 0) {
+                    out[count++] = variable;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return the clue less the painted cells of its window that are fixed
+         */
+        private int residual(int clue) {
+            int k = puzzle.clues[clue];
+            for (int offset : neighbourhood.window(clue)) {
+                int cell = clue + offset;
+                if (variable(cell) == 0 && puzzle.painted[cell]) {
+                    k--;
+                }
+            }
+            return k;
+        }
+
+        /**
+         * @return the paint around a clue in a solution given by the cells
+         *         of the window where it differs from the hidden board
+         */
+        private int paintedAround(int clue, boolean[] differs) {
+            int painted = 0;
+            for (int offset : neighbourhood.window(clue)) {
+                int cell = clue + offset;
+                int variable = variable(cell);
+                boolean flipped = variable != 0 && differs[variable - 1];
+                painted += puzzle.painted[cell] != flipped ? 1 : 0;
+            }
+            return painted;
+        }
+    }
+
+    private static int[] clues(int size, boolean[] painted) {
+        Neighbourhood neighbourhood = Neighbourhood.of(size);
+        int[] clues = new int[size * size];
+        for (int cell = 0; cell < clues.length; cell++) {
+            for (int offset : neighbourhood.window(cell)) {
+                if (painted[cell + offset]) {
+                    clues[cell]++;
+                }
+            }
+        }
+        return clues;
+    }
+}
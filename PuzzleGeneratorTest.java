@@ -0,0 +1,44 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PuzzleGeneratorTest {
+
+    @Test
+    public void testSameSeedGivesSamePuzzle() {
+        assertEquals("Same seed should give the same spec", new PuzzleGenerator(7, 0.5).generate(12).spec(),
+                new PuzzleGenerator(7, 0.5).generate(12).spec());
+        assertNotEquals("Another seed should give another spec", new PuzzleGenerator(7, 0.5).generate(12).spec(),
+                new PuzzleGenerator(8, 0.5).generate(12).spec());
+    }
+
+    @Test
+    public void testCluesMatchHiddenBoard() {
+        Game board = new Game();
+        assertTrue("Generated spec should load", board.setGame(new PuzzleGenerator(3, 0.4).generate(9).spec()));
+        assertEquals("Board should have the requested size", 9, board.size);
+        assertEquals("Every cell should start covered", 81, board.getCoveredCount());
+        for (int cell = 0; cell < 81; cell++) {
+            if (board.getSolution(cell / 9, cell % 9) == board.PAINTED) {
+                board.paint(cell);
+            } else {
+                board.clear(cell);
+            }
+        }
+        assertEquals("Hidden board should meet every clue", 3, new AgentA().verify(board, false));
+    }
+
+    @Test
+    public void testUniquePuzzleHasOneSolution() throws Exception {
+        PuzzleGenerator.Puzzle puzzle = new PuzzleGenerator(11, 0.5).generateUnique(20, 2);
+        assertTrue("Some clues should be hidden", puzzle.shownClues() < 400);
+        assertTrue("Hidden board should be the only solution", PuzzleGenerator.isUnique(puzzle));
+
+        Game board = new Game();
+        board.setGame(puzzle.spec());
+        new AgentC2(true).run(board, false);
+        assertEquals("A unique puzzle should be solved completely", 3, new AgentA().verify(board, false));
+    }
+}
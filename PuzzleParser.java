@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * PuzzleParser.java
+ *
+ * Single-pass parser for game specs such as
+ * {@code .1_,*-*;_2_,.3*}: rows are separated by ';', cells by ',' and every
+ * cell is a status character ('.' covered, '*' painted, '_' cleared), a clue
+ * ('-' for none, or 0-9) and the hidden paint ('*', '_' or '.' if unknown).
+ *
+ * The input is read one character at a time and written straight into the
+ * packed arrays of the {@link Game}, so no intermediate strings are created and
+ * the cost is linear in the size of the spec. The board must be square: the
+ * number of cells in the first row fixes the size, and only the first row is
+ * buffered until then. Malformed input raises a
+ * {@link PuzzleFormatException} with the position of the error.
+ */
+public final class PuzzleParser {
+
+    private static final int EOF = -1;
+    private static final int MAX_CLUE = 9;
+    private static final long MAP_CHUNK = 1L << 30; // bytes mapped at a time
+
+    private final Source in;
+    private final Game game;
+
+    private int ch; // current character, EOF at the end of the input
+    private long offset = -1; // offset of the current character
+    private int row;
+    private int col;
+    private int size = -1; // unknown until the first row is complete
+
+    private byte[] firstRow = new byte[3 * 16]; // clue, state, paint per cell
+
+    private PuzzleParser(Source in, Game game) {
+        this.in = in;
+        this.game = game;
+    }
+
+    /**
+     * Parses a game spec held in memory.
+     *
+     * @param spec the spec, for example the line read by {@link P1main}
+     * @param game the game to load the board into
+     * @throws PuzzleFormatException if the spec is malformed
+     */
+    public static void parse(CharSequence spec, Game game) {
+        try {
+            new PuzzleParser(new CharSequenceSource(spec), game).run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by an in-memory source
+        }
+    }
+
+    /**
+     * Parses a game spec from a reader, buffering only a small block of
+     * characters at a time. The reader is not closed.
+     *
+     * @param reader the source of the spec
+     * @param game   the game to load the board into
+     * @throws IOException           if the reader fails
+     * @throws PuzzleFormatException if the spec is malformed
+     */
+    public static void parse(Reader reader, Game game) throws IOException {
+        new PuzzleParser(new ReaderSource(reader), game).run();
+    }
+
+    /**
+     * Parses a game spec file by memory-mapping it. The spec is plain ASCII,
+     * so bytes are read directly as characters.
+     *
+     * @param file the spec file
+     * @param game the game to load the board into
+     * @throws IOException           if the file cannot be read
+     * @throws PuzzleFormatException if the spec is malformed
+     */
+    public static void parse(Path file, Game game) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new PuzzleParser(new MappedSource(channel), game).run();
+        }
+    }
+
+    private void run() throws IOException {
+        advance();
+        if (ch == EOF) {
+            throw error("empty game spec");
+        }
+        while (true) {
+            int state = readStatus();
+            int clue = readClue();
+            int paint = readPaint();
+            store(clue, state, paint);
+            col++;
+
+            if (ch == ',') {
+                advance();
+                continue;
+            }
+            endRow();
+            if (ch == ';') {
+                advance();
+                if (atEnd()) {
+                    break; // trailing separator
+                }
+                row++;
+                col = 0;
+                if (row >= size) {
+                    throw error("more than " + size + " rows");
+                }
+                continue;
+            }
+            if (atEnd()) {
+                break;
+            }
+            throw error("expected ',' or ';' but found " + describe(ch));
+        }
+        while (ch != EOF) {
+            if (!Character.isWhitespace(ch)) {
+                throw error("unexpected " + describe(ch) + " after the last row");
+            }
+            advance();
+        }
+        if (row + 1 != size) {
+            throw error("expected " + size + " rows but found " + (row + 1));
+        }
+        game.recount();
+    }
+
+    private int readStatus() throws IOException {
+        int state;
+        switch (ch) {
+            case '.':
+                state = game.COVERED;
+                break;
+            case '*':
+                state = game.PAINTED;
+                break;
+            case '_':
+                state = game.CLEARED;
+                break;
+            default:
+                throw error("expected cell status '.', '*' or '_' but found " + describe(ch));
+        }
+        advance();
+        return state;
+    }
+
+    private int readClue() throws IOException {
+        if (ch == '-') {
+            advance();
+            return -1;
+        }
+        if (ch < '0' || ch > '9') {
+            throw error("expected clue '-' or a digit but found " + describe(ch));
+        }
+        int clue = 0;
+        while (ch >= '0' && ch <= '9') {
+            clue = clue * 10 + (ch - '0');
+            if (clue > MAX_CLUE) {
+                throw error("clue larger than " + MAX_CLUE);
+            }
+            advance();
+        }
+        return clue;
+    }
+
+    private int readPaint() throws IOException {
+        int paint;
+        switch (ch) {
+            case '*':
+                paint = game.PAINTED;
+                break;
+            case '_':
+                paint = game.CLEARED;
+                break;
+            case '.':
+                paint = game.COVERED; // hidden board not given
+                break;
+            default:
+                throw error("expected paint '*', '_' or '.' but found " + describe(ch));
+        }
+        advance();
+        return paint;
+    }
+
+    private void store(int clue, int state, int paint) {
+        if (size < 0) {
+            // still in the first row, the size of the board is not known yet
+            if (3 * col + 3 > firstRow.length) {
+                firstRow = Arrays.copyOf(firstRow, firstRow.length * 2);
+            }
+            firstRow[3 * col] = (byte) clue;
+            firstRow[3 * col + 1] = (byte) state;
+            firstRow[3 * col + 2] = (byte) paint;
+            return;
+        }
+        if (col >= size) {
+            throw error("row has more than " + size + " cells");
+        }
+        game.setCell(row * size + col, clue, state, paint);
+    }
+
+    private void endRow() {
+        if (size < 0) {
+            size = col;
+            game.reset(size);
+            for (int c = 0; c < size; c++) {
+                game.setCell(c, firstRow[3 * c], firstRow[3 * c + 1], firstRow[3 * c + 2]);
+            }
+            firstRow = null;
+        } else if (col != size) {
+            throw error("expected " + size + " cells but found " + col);
+        }
+    }
+
+    private boolean atEnd() {
+        return ch == EOF || Character.isWhitespace(ch);
+    }
+
+    private void advance() throws IOException {
+        ch = in.next();
+        offset++;
+    }
+
+    private PuzzleFormatException error(String message) {
+        return new PuzzleFormatException(message, offset, row, col);
+    }
+
+    private static String describe(int ch) {
+        return ch == EOF ? "end of input" : "'" + (char) ch + "'";
+    }
+
+    /**
+     * Character source read one character at a time, EOF at the end.
+     */
+    private abstract static class Source {
+        abstract int next() throws IOException;
+    }
+
+    private static final class CharSequenceSource extends Source {
+        private final CharSequence spec;
+        private int pos;
+
+        CharSequenceSource(CharSequence spec) {
+            this.spec = spec;
+        }
+
+        @Override
+        int next() {
+            return pos < spec.length() ? spec.charAt(pos++) : EOF;
+        }
+    }
+
+    private static final class ReaderSource extends Source {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private int pos;
+        private int limit;
+
+        ReaderSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        int next() throws IOException {
+            if (pos == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return EOF;
+                }
+            }
+            return buffer[pos++];
+        }
+    }
+
+    private static final class MappedSource extends Source {
+        private final FileChannel channel;
+        private final long length;
+        private long mapped; // file position after the current chunk
+        private MappedByteBuffer chunk;
+
+        MappedSource(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+        }
+
+        @Override
+        int next() throws IOException {
+            if (chunk == null || !chunk.hasRemaining()) {
+                if (mapped >= length) {
+                    return EOF;
+                }
+                long count = Math.min(MAP_CHUNK, length - mapped);
+                chunk = channel.map(FileChannel.MapMode.READ_ONLY, mapped, count);
+                mapped += count;
+            }
+            return chunk.get() & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Test;
+
+public class PuzzleParserTest {
+
+    @Test
+    public void testParsesCells() {
+        Game board = new Game();
+        PuzzleParser.parse(".1*,*-_;_3_,.0.", board);
+        assertEquals("Size should come from the first row", 2, board.size);
+        assertEquals("Clue should be read", 1, board.getClue(0, 0));
+        assertEquals("Missing clue should be -1", -1, board.getClue(0, 1));
+        int[][] expectedState = {
+                { board.COVERED, board.PAINTED },
+                { board.CLEARED, board.COVERED }
+        };
+        assertArrayEquals("States should be read", expectedState, board.getStateMatrix());
+        assertEquals("Hidden paint should be read", board.PAINTED, board.getSolution(0, 0));
+        assertEquals("Unknown hidden paint should stay covered", board.COVERED, board.getSolution(1, 1));
+    }
+
+    @Test
+    public void testReaderMatchesCharSequence() throws IOException {
+        String spec = ".1*,.2_,.-_;.3*,*4*,.2_;.2_,.-*,.1_\n";
+        Game fromString = new Game();
+        Game fromReader = new Game();
+        PuzzleParser.parse(spec, fromString);
+        PuzzleParser.parse(new StringReader(spec), fromReader);
+        assertArrayEquals("Both sources should give the same board", fromString.getStateMatrix(),
+                fromReader.getStateMatrix());
+        assertEquals("Both sources should give the same clues", fromString.getClue(1, 1), fromReader.getClue(1, 1));
+    }
+
+    @Test
+    public void testReportsErrorPosition() {
+        try {
+            PuzzleParser.parse(".1*,.2_;.3*,.x_", new Game());
+            fail("Bad clue should be rejected");
+        } catch (PuzzleFormatException e) {
+            assertEquals("Offset should point at the bad clue", 13, e.getOffset());
+            assertEquals("Row should be reported", 1, e.getRow());
+            assertEquals("Cell should be reported", 1, e.getColumn());
+        }
+    }
+
+    @Test
+    public void testRejectsNonSquareBoard() {
+        Game board = new Game();
+        boolean parse = board.setGame(".1*,.2_;.3*,.2_;.1*,.1_");
+        assertEquals("A board with more rows than columns should be rejected", false, parse);
+    }
+}
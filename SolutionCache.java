@@ -0,0 +1,218 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SolutionCache.java
+ *
+ * Bounded cache of the boards the agents have already played, so that a
+ * puzzle seen before (possibly rotated or mirrored) is answered without
+ * running the agents again.
+ *
+ * A board is keyed by the agent and a canonical fingerprint of its clues and
+ * current states: of the 8 rotations and reflections of the square board, the
+ * one whose cells read smallest in row-major order. The cached value is the
+ * board state the agents left, in the same canonical orientation, and is
+ * mapped back through the symmetry of the board being restored. Keying, storing
+ * and restoring are all O(cells). The cache holds at most a given number of
+ * cells over all its boards, evicting the least recently used boards first, so
+ * a few huge boards cannot exhaust memory. All methods are thread-safe.
+ */
+public final class SolutionCache {
+
+    /**
+     * The canonical fingerprint of a board, with the symmetry that maps the
+     * board onto it.
+     */
+    public static final class Key {
+        private final String agent;
+        private final int size;
+        private final byte[] cells; // (clue + 1) * 3 + state, canonical orientation
+        private final int hash;
+        private final int transform;
+
+        private Key(String agent, int size, byte[] cells, int transform) {
+            this.agent = agent;
+            this.size = size;
+            this.cells = cells;
+            this.transform = transform;
+            this.hash = 31 * (31 * agent.hashCode() + size) + Arrays.hashCode(cells);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && size == key.size && agent.equals(key.agent) && Arrays.equals(cells, key.cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final Map<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private final long maxCells;
+    private long cells; // cells of all the cached boards
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxCells the number of cells to keep over all boards
+     */
+    public SolutionCache(long maxCells) {
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * Computes the key of a board in its current state.
+     *
+     * @param agent the agent the board is played with
+     * @param game  the board
+     * @return its key
+     */
+    public Key key(String agent, Game game) {
+        int n = game.size;
+        int transform = canonicalTransform(game);
+        byte[] cells = new byte[n * n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                cells[r * n + c] = (byte) value(game, source(transform, r, c, n));
+            }
+        }
+        return new Key(agent, n, cells, transform);
+    }
+
+    /**
+     * Puts the cached result for a key onto the board, if there is one.
+     *
+     * @param key  the key computed for the board before playing it
+     * @param game the board, in the state the key was computed for
+     * @return true on a hit, in which case the board now holds the result
+     */
+    public boolean restore(Key key, Game game) {
+        byte[] states;
+        synchronized (this) {
+            states = entries.get(key);
+            if (states == null) {
+                misses++;
+                return false;
+            }
+            hits++;
+        }
+        int n = key.size;
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                int cell = source(key.transform, r, c, n);
+                int state = states[r * n + c];
+                if (state == game.PAINTED) {
+                    game.paint(cell);
+                } else if (state == game.CLEARED) {
+                    game.clear(cell);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the state the agents left on a board.
+     *
+     * @param key  the key computed for the board before playing it
+     * @param game the board after playing it
+     */
+    public void store(Key key, Game game) {
+        int n = key.size;
+        byte[] states = new byte[n * n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                states[r * n + c] = (byte) game.getState(source(key.transform, r, c, n));
+            }
+        }
+        synchronized (this) {
+            if (entries.put(key, states) == null) {
+                cells += states.length;
+            }
+            Iterator<Key> eldest = entries.keySet().iterator();
+            while (cells > maxCells && eldest.hasNext()) {
+                cells -= eldest.next().cells.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Finds the symmetry whose image of the board reads smallest, comparing
+     * the 8 images cell by cell and dropping each one as soon as it reads
+     * larger than another. Usually only a few cells are read before a single
+     * image is left; symmetric boards keep the lowest transform.
+     */
+    private static int canonicalTransform(Game game) {
+        int n = game.size;
+        int alive = 0xFF; // one bit per transform still in the running
+        int[] values = new int[8];
+        for (int i = 0; i < n * n && Integer.bitCount(alive) > 1; i++) {
+            int r = i / n;
+            int c = i % n;
+            int best = Integer.MAX_VALUE;
+            for (int t = 0; t < 8; t++) {
+                if ((alive & 1 << t) != 0) {
+                    values[t] = value(game, source(t, r, c, n));
+                    best = Math.min(best, values[t]);
+                }
+            }
+            for (int t = 0; t < 8; t++) {
+                if ((alive & 1 << t) != 0 && values[t] != best) {
+                    alive &= ~(1 << t);
+                }
+            }
+        }
+        return Integer.numberOfTrailingZeros(alive);
+    }
+
+    private static int value(Game game, int cell) {
+        return (game.getClue(cell) + 1) * 3 + game.getState(cell);
+    }
+
+    /**
+     * @return the cell of the board shown at (r, c) of its image under the
+     *         given rotation or reflection
+     */
+    static int source(int transform, int r, int c, int n) {
+        int m = n - 1;
+        switch (transform) {
+            case 0: // identity
+                return r * n + c;
+            case 1: // rotation by 90 degrees
+                return c * n + (m - r);
+            case 2: // rotation by 180 degrees
+                return (m - r) * n + (m - c);
+            case 3: // rotation by 270 degrees
+                return (m - c) * n + r;
+            case 4: // mirror left-right
+                return r * n + (m - c);
+            case 5: // transpose
+                return c * n + r;
+            case 6: // mirror top-bottom
+                return (m - r) * n + c;
+            default: // anti-transpose
+                return (m - c) * n + (m - r);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class SolutionCacheTest {
+
+    private static final String BOARD = ".1_,.-_,.2_;.-_,.3_,.-_;.-_,.-_,.-_";
+    private static final String ROTATED = ".-_,.-_,.1_;.-_,.3_,.-_;.-_,.-_,.2_"; // BOARD turned clockwise
+
+    @Test
+    public void testRotatedBoardRestoresRotatedResult() {
+        SolutionCache cache = new SolutionCache(1000);
+        Game board = new Game();
+        board.setGame(BOARD);
+        SolutionCache.Key key = cache.key("B", board);
+        board.paint(0, 0);
+        board.clear(0, 1);
+        cache.store(key, board);
+
+        Game rotated = new Game();
+        rotated.setGame(ROTATED);
+        assertTrue("Rotated board should hit the cache", cache.restore(cache.key("B", rotated), rotated));
+        assertEquals("Top-left corner should map to the top-right corner", rotated.PAINTED, rotated.getState(0, 2));
+        assertEquals("Top edge should map to the right edge", rotated.CLEARED, rotated.getState(1, 2));
+        assertEquals("Other cells should stay covered", 7, rotated.getCoveredCount());
+    }
+
+    @Test
+    public void testKeyDependsOnAgentAndState() {
+        SolutionCache cache = new SolutionCache(1000);
+        Game board = new Game();
+        board.setGame(BOARD);
+        cache.store(cache.key("B", board), board);
+
+        assertFalse("Another agent should miss", cache.restore(cache.key("C1", board), board));
+        board.clear(2, 2);
+        assertFalse("Another reveal state should miss", cache.restore(cache.key("B", board), board));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedBoardIsEvicted() {
+        SolutionCache cache = new SolutionCache(18); // room for two 3x3 boards
+        Game first = new Game();
+        first.setGame(BOARD);
+        Game second = new Game();
+        second.setGame(".1_,.-_,.-_;.-_,.-_,.-_;.-_,.-_,.-_");
+        Game third = new Game();
+        third.setGame(".2_,.-_,.-_;.-_,.-_,.-_;.-_,.-_,.-_");
+
+        cache.store(cache.key("B", first), first);
+        cache.store(cache.key("B", second), second);
+        assertTrue("First board should still be cached", cache.restore(cache.key("B", first), first));
+        cache.store(cache.key("B", third), third);
+        assertEquals("Cache should keep two boards", 2, cache.size());
+        assertFalse("Second board was the least recently used", cache.restore(cache.key("B", second), second));
+        assertTrue("First board was used recently", cache.restore(cache.key("B", first), first));
+    }
+}
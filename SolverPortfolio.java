@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * SolverPortfolio.java
+ *
+ * Runs the same constraints on several differently configured SAT4J solvers,
+ * each on its own thread, and keeps the first one to answer. The others are
+ * stopped through {@link ISolver#expireTimeout()}, since SAT4J does not react
+ * to interrupts, and {@code solve} returns only once every one of them has
+ * stopped. The winning solver is returned with its answer, so callers
+ * can keep using it incrementally (for instance to compute a backbone).
+ *
+ * Several threads may solve at once; their solvers share the threads of the
+ * portfolio, which run until {@link #close()}.
+ */
+public final class SolverPortfolio implements AutoCloseable {
+
+    private static final long EXPIRE_MILLIS = 10; // how often losing solvers are expired again
+
+    /**
+     * The answer of the fastest solver.
+     */
+    public static final class Result {
+        public final String name;
+        public final ISolver solver;
+        public final boolean satisfiable;
+
+        Result(String name, ISolver solver, boolean satisfiable) {
+            this.name = name;
+            this.solver = solver;
+            this.satisfiable = satisfiable;
+        }
+    }
+
+    private final Map<String, Supplier<ISolver>> configurations = new LinkedHashMap<>();
+    private final int timeout;
+    private final ExecutorService pool; // one thread per configuration, shared by every solve
+
+    /**
+     * Creates a portfolio of the default SAT4J configuration, Glucose 2.1
+     * restarts and clause deletion, MiniSat with Biere's simplification, and
+     * the light configuration.
+     *
+     * @param timeout the timeout of every solver, in seconds
+     */
+    public SolverPortfolio(int timeout) {
+        this.timeout = timeout;
+        configurations.put("default", SolverFactory::newDefault);
+        configurations.put("glucose21", SolverFactory::newGlucose21);
+        configurations.put("biere", SolverFactory::newMiniLearningHeapRsatExpSimpBiere);
+        configurations.put("light", SolverFactory::newLight);
+        pool = Executors.newFixedThreadPool(configurations.size(), runnable -> {
+            Thread thread = new Thread(runnable, "sat-portfolio");
+            thread.setDaemon(true); // never keep the JVM alive for an idle portfolio
+            return thread;
+        });
+    }
+
+    /**
+     * @return the names of the configurations, in the order they are started
+     */
+    public List<String> names() {
+        return new ArrayList<>(configurations.keySet());
+    }
+
+    /**
+     * Loads the constraints into every configuration and solves them in
+     * parallel.
+     *
+     * @param constraints the constraints to solve
+     * @return the first answer
+     * @throws TimeoutException      if every solver timed out or failed
+     * @throws InterruptedException  if interrupted while waiting
+     * @throws IllegalStateException if the portfolio is closed
+     */
+    public Result solve(ConstraintBuffer constraints) throws TimeoutException, InterruptedException {
+        List<String> names = names();
+        ISolver[] solvers = new ISolver[names.size()];
+        for (int i = 0; i < solvers.length; i++) {
+            solvers[i] = configurations.get(names.get(i)).get();
+            solvers[i].setTimeout(timeout);
+        }
+
+        CompletionService<Result> completed = new ExecutorCompletionService<>(pool);
+        AtomicBoolean done = new AtomicBoolean(); // set once the caller stops waiting
+        CountDownLatch finished = new CountDownLatch(solvers.length);
+        Result winner = null;
+        try {
+            for (int i = 0; i < solvers.length; i++) {
+                try {
+                    completed.submit(task(names.get(i), solvers[i], constraints, done, finished));
+                } catch (RejectedExecutionException e) {
+                    for (int left = i; left < solvers.length; left++) {
+                        finished.countDown(); // never started
+                    }
+                    throw new IllegalStateException("portfolio closed", e);
+                }
+            }
+            for (int i = 0; i < solvers.length; i++) {
+                try {
+                    winner = completed.take().get();
+                    return winner;
+                } catch (ExecutionException e) {
+                    // this configuration failed or timed out, wait for the next one
+                }
+            }
+            throw new TimeoutException();
+        } finally {
+            done.set(true);
+            // a loser may pass its last check just before this and only then
+            // start solving, which arms its timeout again, so keep expiring
+            // until every task has returned
+            boolean interrupted = false;
+            while (true) {
+                for (ISolver solver : solvers) {
+                    if (winner == null || solver != winner.solver) {
+                        solver.expireTimeout();
+                    }
+                }
+                try {
+                    if (finished.await(EXPIRE_MILLIS, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true; // still wait, or a loser could run on until its timeout
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * One configuration of a solve: loads and solves the constraints unless
+     * another configuration has already answered, and counts down when it
+     * returns.
+     */
+    private static Callable<Result> task(String name, ISolver solver, ConstraintBuffer constraints,
+            AtomicBoolean done, CountDownLatch finished) {
+        return () -> {
+            try {
+                if (done.get()) {
+                    throw new InterruptedException(); // lost before starting
+                }
+                try {
+                    constraints.addTo(solver);
+                } catch (ContradictionException e) {
+                    return new Result(name, solver, false); // unsatisfiable while loading
+                }
+                if (done.get()) {
+                    throw new InterruptedException(); // lost while loading, do not start solving
+                }
+                return new Result(name, solver, solver.isSatisfiable());
+            } finally {
+                finished.countDown();
+            }
+        };
+    }
+
+    /**
+     * Stops the threads of the portfolio once the solves still running have
+     * returned. Later solves throw {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        pool.shutdown(); // queued losers still run, see done, and count down
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SolverPortfolioTest {
+
+    @Test
+    public void testSameAnswerAsDefaultSolver() throws Exception {
+        SolverPortfolio portfolio = new SolverPortfolio(60);
+        try {
+            ConstraintBuffer satisfiable = new ConstraintBuffer();
+            satisfiable.exactly(new int[] { 1, 2, 3 }, 3, 1);
+            satisfiable.clause(new int[] { -1 }, 1);
+            SolverPortfolio.Result result = portfolio.solve(satisfiable);
+            assertTrue(portfolio.names().contains(result.name));
+            assertTrue(result.satisfiable);
+            assertFalse("The winner keeps the unit clause", result.solver.model(1));
+
+            ConstraintBuffer unsatisfiable = new ConstraintBuffer();
+            unsatisfiable.exactly(new int[] { 1, 2 }, 2, 1);
+            unsatisfiable.clause(new int[] { 1 }, 1);
+            unsatisfiable.clause(new int[] { 2 }, 1);
+            assertFalse(portfolio.solve(unsatisfiable).satisfiable);
+        } finally {
+            portfolio.close();
+        }
+    }
+
+    @Test
+    public void testSameBackboneAsDefaultSolver() throws Exception {
+        assertSameBackbone(PuzzleFixtures.NESTED);
+        assertSameBackbone(PuzzleFixtures.CONTRADICTION);
+        for (String spec : PuzzleFixtures.generatedSpecs(8)) {
+            assertSameBackbone(spec);
+        }
+    }
+
+    @Test
+    public void testPlayClosesItsPortfolio() throws Exception {
+        for (String spec : PuzzleFixtures.generatedSpecs(8)) {
+            Game expected = PuzzleFixtures.board(spec);
+            Game board = PuzzleFixtures.board(spec);
+            assertEquals(P1main.play("C2", expected, false), P1main.play("C2", board, false, true));
+            assertArrayEquals(expected.getStateMatrix(), board.getStateMatrix());
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (portfolioThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("Every portfolio thread should stop once play returns", 0, portfolioThreads());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedPortfolioRefusesToSolve() throws Exception {
+        SolverPortfolio portfolio = new SolverPortfolio(60);
+        portfolio.close();
+        portfolio.solve(new ConstraintBuffer());
+    }
+
+    /**
+     * Checks that Agent C2 in backbone mode forces the same cells with and
+     * without the portfolio, on the whole board and split into components.
+     */
+    private static void assertSameBackbone(String spec) {
+        for (boolean decompose : new boolean[] { false, true }) {
+            AgentC2 plain = new AgentC2(true);
+            plain.setDecompose(decompose);
+            Game expected = PuzzleFixtures.board(spec);
+            plain.run(expected, false);
+
+            AgentC2 raced = new AgentC2(true);
+            raced.setDecompose(decompose);
+            raced.setPortfolio(true);
+            Game board = PuzzleFixtures.board(spec);
+            try {
+                raced.run(board, false);
+            } finally {
+                raced.setPortfolio(false);
+            }
+            assertArrayEquals("The portfolio should force the same cells of " + spec
+                    + (decompose ? " by component" : ""), expected.getStateMatrix(), board.getStateMatrix());
+            assertEquals(expected.getCoveredCount(), board.getCoveredCount());
+        }
+    }
+
+    private static long portfolioThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("sat-portfolio")).count();
+    }
+}
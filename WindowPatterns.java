@@ -0,0 +1,238 @@
+import java.util.function.IntConsumer;
+
+/**
+ * WindowPatterns.java
+ *
+ * Precomputed paint patterns of a clue window. A pattern is a 9-bit mask of
+ * the window positions that are painted, bit (dr + 1) * 3 + (dc + 1) standing
+ * for the cell at offset (dr, dc), as in {@link Neighbourhood#mask}. A set of
+ * patterns is a 512-bit set held in {@link #WORDS} longs, so restricting a
+ * clue to the patterns that agree with a cell, or checking whether every
+ * remaining pattern agrees on a cell, is a handful of word operations.
+ *
+ * The valid patterns of every clue value and border shape are built once,
+ * together with, for every relative position of two overlapping windows, the
+ * index of each pattern's paint on the cells the two windows share. Nothing
+ * here is enumerated per board or per run.
+ */
+public final class WindowPatterns {
+
+    /**
+     * Longs in one pattern set.
+     */
+    public static final int WORDS = 8;
+
+    private static final long[][][] VALID = new long[10][512][]; // [clue][border mask], null if not a border shape
+    private static final long[][] SUPPORT = new long[9][WORDS]; // patterns that paint each position
+    private static final byte[][] SHARED = new byte[25][512]; // [(dr + 2) * 5 + dc + 2][pattern]
+
+    static {
+        for (int shape = 0; shape < 16; shape++) {
+            int rows = rowsOrColumns(shape >> 2);
+            int cols = rowsOrColumns(shape & 3);
+            int onBoard = 0;
+            for (int p = 0; p < 9; p++) {
+                if ((rows >> p / 3 & 1) != 0 && (cols >> p % 3 & 1) != 0) {
+                    onBoard |= 1 << p;
+                }
+            }
+            for (int clue = 0; clue < 10; clue++) {
+                VALID[clue][onBoard] = new long[WORDS];
+            }
+            for (int pattern = onBoard;; pattern = (pattern - 1) & onBoard) { // every subset of the window
+                add(VALID[Integer.bitCount(pattern)][onBoard], pattern);
+                if (pattern == 0) {
+                    break;
+                }
+            }
+        }
+        for (int p = 0; p < 9; p++) {
+            for (int pattern = 0; pattern < 512; pattern++) {
+                if ((pattern >> p & 1) != 0) {
+                    add(SUPPORT[p], pattern);
+                }
+            }
+        }
+        for (int dr = -2; dr <= 2; dr++) {
+            for (int dc = -2; dc <= 2; dc++) {
+                if (dr == 0 && dc == 0) {
+                    continue; // a window shares all its cells with itself
+                }
+                int shared = sharedMask(dr, dc);
+                byte[] keys = SHARED[(dr + 2) * 5 + dc + 2];
+                for (int pattern = 0; pattern < 512; pattern++) {
+                    int key = 0;
+                    int bit = 0;
+                    for (int p = 0; p < 9; p++) { // shared cells in row-major order, the same order for both windows
+                        if ((shared >> p & 1) != 0) {
+                            key |= (pattern >> p & 1) << bit++;
+                        }
+                    }
+                    keys[pattern] = (byte) key;
+                }
+            }
+        }
+    }
+
+    private WindowPatterns() {
+    }
+
+    /**
+     * @param edges bit 0 for no row (or column) before, bit 1 for none after
+     * @return the window rows (or columns) on the board, as 3 bits
+     */
+    private static int rowsOrColumns(int edges) {
+        return 7 & ~((edges & 1) != 0 ? 1 : 0) & ~((edges & 2) != 0 ? 4 : 0);
+    }
+
+    /**
+     * @return the positions of a window that are also in the window at offset
+     *         (dr, dc) from its centre
+     */
+    private static int sharedMask(int dr, int dc) {
+        int mask = 0;
+        for (int p = 0; p < 9; p++) {
+            if (Math.abs(p / 3 - 1 - dr) <= 1 && Math.abs(p % 3 - 1 - dc) <= 1) {
+                mask |= 1 << p;
+            }
+        }
+        return mask;
+    }
+
+    private static void add(long[] set, int pattern) {
+        set[pattern >>> 6] |= 1L << pattern;
+    }
+
+    /**
+     * Returns the patterns of a window that paint exactly {@code clue} cells.
+     * The array is shared and must not be modified.
+     *
+     * @param clue    the clue value, 0 to 9
+     * @param onBoard the border mask of the window, from
+     *                {@link Neighbourhood#mask}
+     * @return the set of valid patterns
+     */
+    public static long[] valid(int clue, int onBoard) {
+        return VALID[clue][onBoard];
+    }
+
+    /**
+     * Keeps only the patterns with the given value at a position.
+     *
+     * @param set      the set to restrict, at {@code offset}
+     * @param offset   where the set starts in its array
+     * @param position the window position, 0 to 8
+     * @param painted  the value of the cell there
+     * @return true if the set changed
+     */
+    public static boolean restrict(long[] set, int offset, int position, boolean painted) {
+        long[] support = SUPPORT[position];
+        boolean changed = false;
+        for (int w = 0; w < WORDS; w++) {
+            long kept = painted ? set[offset + w] & support[w] : set[offset + w] & ~support[w];
+            changed |= kept != set[offset + w];
+            set[offset + w] = kept;
+        }
+        return changed;
+    }
+
+    /**
+     * Tells whether every pattern of a set has the same value at a position.
+     *
+     * @param set      the set, at {@code offset}
+     * @param offset   where the set starts in its array
+     * @param position the window position, 0 to 8
+     * @return 1 if every pattern paints the position, -1 if none does, 0 if
+     *         the patterns disagree or the set is empty
+     */
+    public static int agreed(long[] set, int offset, int position) {
+        long[] support = SUPPORT[position];
+        long painted = 0;
+        long cleared = 0;
+        for (int w = 0; w < WORDS; w++) {
+            painted |= set[offset + w] & support[w];
+            cleared |= set[offset + w] & ~support[w];
+        }
+        if (painted == 0) {
+            return cleared == 0 ? 0 : -1;
+        }
+        return cleared == 0 ? 1 : 0;
+    }
+
+    /**
+     * Collects the paint a set allows on the cells shared with the window at
+     * offset (dr, dc): bit k is set if some pattern paints the shared cells
+     * as the bits of k, shared cells taken in row-major order.
+     *
+     * @param set    the set, at {@code offset}
+     * @param offset where the set starts in its array
+     * @param dr     row of the other window relative to this one, -2 to 2
+     * @param dc     column of the other window relative to this one, -2 to 2
+     * @return the shared paint allowed, as a 64-bit set
+     */
+    public static long sharedPaint(long[] set, int offset, int dr, int dc) {
+        byte[] keys = SHARED[(dr + 2) * 5 + dc + 2];
+        long allowed = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long bits = set[offset + w]; bits != 0; bits &= bits - 1) {
+                allowed |= 1L << keys[w << 6 | Long.numberOfTrailingZeros(bits)];
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Keeps only the patterns whose paint on the cells shared with the window
+     * at offset (dr, dc) is in {@code allowed}, as returned by
+     * {@link #sharedPaint} for that window (with the offset negated).
+     *
+     * @param set     the set to restrict, at {@code offset}
+     * @param offset  where the set starts in its array
+     * @param dr      row of the other window relative to this one, -2 to 2
+     * @param dc      column of the other window relative to this one, -2 to 2
+     * @param allowed the shared paint the other window allows
+     * @return true if the set changed
+     */
+    public static boolean restrictShared(long[] set, int offset, int dr, int dc, long allowed) {
+        byte[] keys = SHARED[(dr + 2) * 5 + dc + 2];
+        boolean changed = false;
+        for (int w = 0; w < WORDS; w++) {
+            long word = set[offset + w];
+            for (long bits = word; bits != 0; bits &= bits - 1) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                if ((allowed >>> keys[w << 6 | bit] & 1) == 0) {
+                    word &= ~(1L << bit);
+                }
+            }
+            changed |= word != set[offset + w];
+            set[offset + w] = word;
+        }
+        return changed;
+    }
+
+    /**
+     * @return true if the set, at {@code offset}, has no pattern left
+     */
+    public static boolean isEmpty(long[] set, int offset) {
+        long any = 0;
+        for (int w = 0; w < WORDS; w++) {
+            any |= set[offset + w];
+        }
+        return any == 0;
+    }
+
+    /**
+     * Calls the visitor for every pattern of a set, in increasing order.
+     *
+     * @param set     the set, at {@code offset}
+     * @param offset  where the set starts in its array
+     * @param visitor receives each pattern
+     */
+    public static void forEach(long[] set, int offset, IntConsumer visitor) {
+        for (int w = 0; w < WORDS; w++) {
+            for (long bits = set[offset + w]; bits != 0; bits &= bits - 1) {
+                visitor.accept(w << 6 | Long.numberOfTrailingZeros(bits));
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package mosaic.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AgentBenchmark.java
+ *
+ * One run of AgentA and AgentB on a covered random board. AgentA only reads
+ * the board, so it is measured on the same board throughout; AgentB plays the
+ * board, so each of its runs gets a freshly loaded copy, outside of the
+ * measured time. The SAT agents are in {@link SatAgentBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentBenchmark {
+
+    @Param({ "5", "50", "500" })
+    int size;
+
+    @Param({ "0.5", "1.0" })
+    double clueDensity;
+
+    private String spec;
+    private Object game;
+    private Object agentA;
+    private Object agentB;
+
+    /**
+     * A board loaded again before every run, for the agents that play it.
+     */
+    @State(Scope.Thread)
+    public static class FreshBoard {
+        Object game;
+
+        @Setup(Level.Invocation)
+        public void load(AgentBenchmark benchmark) {
+            game = Mosaic.game(benchmark.spec);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Throwable {
+        spec = Mosaic.randomSpec(size, clueDensity, 1);
+        game = Mosaic.game(spec);
+        agentA = (Object) Mosaic.NEW_AGENT_A.invokeExact();
+        agentB = (Object) Mosaic.NEW_AGENT_B.invokeExact();
+    }
+
+    @Benchmark
+    public int agentA() throws Throwable {
+        return (int) Mosaic.RUN_A.invokeExact(agentA, game, false);
+    }
+
+    @Benchmark
+    public int agentAVerify() throws Throwable {
+        return (int) Mosaic.VERIFY_A.invokeExact(agentA, game, false);
+    }
+
+    @Benchmark
+    public Object agentB(FreshBoard board) throws Throwable {
+        Mosaic.RUN_B.invokeExact(agentB, board.game, false);
+        return board.game;
+    }
+}
@@ -0,0 +1,64 @@
+package mosaic.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * GameBenchmark.java
+ *
+ * Loading a board from its spec and reading the states around every cell.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({ "5", "50", "500" })
+    int size;
+
+    @Param({ "0.5", "1.0" })
+    double clueDensity;
+
+    private String spec;
+    private Object game;
+
+    @Setup
+    public void setUp() {
+        spec = Mosaic.randomSpec(size, clueDensity, 1);
+        game = Mosaic.game(spec);
+    }
+
+    @Benchmark
+    public Object setGame() throws Throwable {
+        Object game = (Object) Mosaic.NEW_GAME.invokeExact();
+        boolean loaded = (boolean) Mosaic.SET_GAME.invokeExact(game, spec);
+        return loaded ? game : null;
+    }
+
+    /**
+     * Reads the neighbours of every cell once, as the propagation agents do.
+     */
+    @Benchmark
+    public void getNeighborsStates(Blackhole blackhole) throws Throwable {
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                blackhole.consume((int[]) Mosaic.GET_NEIGHBORS_STATES.invokeExact(game, x, y));
+            }
+        }
+    }
+}
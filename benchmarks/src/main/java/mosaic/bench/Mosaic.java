@@ -0,0 +1,180 @@
+package mosaic.bench;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+/**
+ * Mosaic.java
+ *
+ * Access to the board and the agents for the benchmarks. The game classes
+ * live in the unnamed package, which a named package cannot import, so they
+ * are reached through method handles; a constant handle called with
+ * invokeExact is inlined by the JIT like a direct call, so it does not
+ * distort the measurements.
+ */
+final class Mosaic {
+
+    static final MethodHandle NEW_GAME;             // () -> Game
+    static final MethodHandle SET_GAME;             // (Game, String) -> boolean
+    static final MethodHandle GET_NEIGHBORS_STATES; // (Game, int, int) -> int[]
+    static final MethodHandle NEW_AGENT_A;          // () -> AgentA
+    static final MethodHandle RUN_A;                // (AgentA, Game, boolean) -> int
+    static final MethodHandle VERIFY_A;             // (AgentA, Game, boolean) -> int
+    static final MethodHandle NEW_AGENT_B;          // () -> AgentB
+    static final MethodHandle RUN_B;                // (AgentB, Game, boolean) -> void
+    static final MethodHandle NEW_AGENT_C1;         // (boolean decompose) -> AgentC1
+    static final MethodHandle RUN_C1;               // (AgentC1, Game, boolean) -> void
+    static final MethodHandle NEW_AGENT_C2;         // (boolean decompose) -> AgentC2
+    static final MethodHandle RUN_C2;               // (AgentC2, Game, boolean) -> void
+    static final MethodHandle NEW_AGENT_C3;         // () -> AgentC3
+    static final MethodHandle RUN_C3;               // (AgentC3, Game, boolean) -> void
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            Class<?> game = Class.forName("Game");
+            NEW_GAME = erase(lookup.findConstructor(game, methodType(void.class)));
+            SET_GAME = erase(lookup.findVirtual(game, "setGame", methodType(boolean.class, String.class)));
+            GET_NEIGHBORS_STATES = erase(lookup.findVirtual(game, "getNeighborsStates",
+                    methodType(int[].class, int.class, int.class)));
+
+            Class<?> agentA = Class.forName("AgentA");
+            NEW_AGENT_A = erase(lookup.findConstructor(agentA, methodType(void.class)));
+            RUN_A = erase(lookup.findVirtual(agentA, "run", methodType(int.class, game, boolean.class)));
+            VERIFY_A = erase(lookup.findVirtual(agentA, "verify", methodType(int.class, game, boolean.class)));
+
+            Class<?> agentB = Class.forName("AgentB");
+            NEW_AGENT_B = erase(lookup.findConstructor(agentB, methodType(void.class)));
+            RUN_B = erase(lookup.findVirtual(agentB, "run", methodType(void.class, game, boolean.class)));
+
+            // the agents are configured as P1main plays them, C1 with decompose false
+            Class<?> agentC1 = Class.forName("AgentC1");
+            Class<?> encoding = Class.forName("AgentC1$Encoding");
+            MethodHandle c1 = lookup.findConstructor(agentC1, methodType(void.class, encoding, boolean.class));
+            c1 = MethodHandles.insertArguments(c1, 0, encodingConstant(encoding, "SEQUENTIAL_COUNTER"), true);
+            NEW_AGENT_C1 = erase(configure(c1, lookup.findVirtual(agentC1, "setDecompose",
+                    methodType(void.class, boolean.class))));
+            RUN_C1 = erase(lookup.findVirtual(agentC1, "run", methodType(void.class, game, boolean.class)));
+
+            Class<?> agentC2 = Class.forName("AgentC2");
+            MethodHandle c2 = lookup.findConstructor(agentC2, methodType(void.class, boolean.class));
+            c2 = MethodHandles.insertArguments(c2, 0, true);
+            NEW_AGENT_C2 = erase(configure(c2, lookup.findVirtual(agentC2, "setDecompose",
+                    methodType(void.class, boolean.class))));
+            RUN_C2 = erase(lookup.findVirtual(agentC2, "run", methodType(void.class, game, boolean.class)));
+
+            Class<?> agentC3 = Class.forName("AgentC3");
+            NEW_AGENT_C3 = erase(lookup.findConstructor(agentC3, methodType(void.class)));
+            RUN_C3 = erase(lookup.findVirtual(agentC3, "run", methodType(void.class, game, boolean.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Mosaic() {
+    }
+
+    /**
+     * Generates the spec of a random square board with a known solution.
+     *
+     * @param size    the number of rows and columns
+     * @param density the probability that a cell shows its clue
+     * @param seed    the seed of the board
+     * @return the spec, every cell covered
+     */
+    static String randomSpec(int size, double density, long seed) {
+        Random random = new Random(seed);
+        boolean[][] painted = new boolean[size][size];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                painted[r][c] = random.nextBoolean();
+            }
+        }
+        StringBuilder spec = new StringBuilder(size * size * 5);
+        for (int r = 0; r < size; r++) {
+            if (r > 0) {
+                spec.append(';');
+            }
+            for (int c = 0; c < size; c++) {
+                if (c > 0) {
+                    spec.append(',');
+                }
+                spec.append('.');
+                if (random.nextDouble() < density) {
+                    spec.append(paintedAround(painted, r, c));
+                } else {
+                    spec.append('-');
+                }
+                spec.append(painted[r][c] ? '*' : '_');
+            }
+        }
+        return spec.toString();
+    }
+
+    /**
+     * @return a board loaded from a spec
+     */
+    static Object game(String spec) {
+        try {
+            Object game = (Object) NEW_GAME.invokeExact();
+            if (!(boolean) SET_GAME.invokeExact(game, spec)) {
+                throw new IllegalArgumentException("Invalid game spec");
+            }
+            return game;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int paintedAround(boolean[][] painted, int r, int c) {
+        int n = painted.length;
+        int count = 0;
+        for (int i = Math.max(0, r - 1); i <= Math.min(n - 1, r + 1); i++) {
+            for (int j = Math.max(0, c - 1); j <= Math.min(n - 1, c + 1); j++) {
+                if (painted[i][j]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object encodingConstant(Class<?> encoding, String name) {
+        return Enum.valueOf((Class) encoding, name);
+    }
+
+    /**
+     * Chains a constructor with a boolean setter, taking the setter argument.
+     */
+    private static MethodHandle configure(MethodHandle constructor, MethodHandle setter) {
+        // (agent, flag) -> agent, then the agent comes from the constructor
+        MethodHandle returnAgent = MethodHandles.dropArguments(MethodHandles.identity(constructor.type().returnType()),
+                1, boolean.class);
+        MethodHandle set = MethodHandles.foldArguments(returnAgent, setter);
+        return MethodHandles.collectArguments(set, 0, constructor);
+    }
+
+    /**
+     * Replaces the game classes in the type of a handle with Object, so that
+     * it can be called with invokeExact from here.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (type.parameterType(i).getPackageName().isEmpty()) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (type.returnType().getPackageName().isEmpty()) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+}
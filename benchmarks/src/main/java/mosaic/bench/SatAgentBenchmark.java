@@ -0,0 +1,93 @@
+package mosaic.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SatAgentBenchmark.java
+ *
+ * One run of AgentC1, AgentC2 and AgentC3, set up as P1main plays them, on a freshly
+ * loaded covered random board; a run covers the presolve, the encoding and
+ * the solving. AgentC1 runs on its solver session, as in P1main, and once
+ * more split into components, as AgentC2 runs. A fully covered random board is far harder than a played one,
+ * so the default sizes stop at 50; pass -p size=500 to measure the largest
+ * boards as well, with a correspondingly long run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SatAgentBenchmark {
+
+    @Param({ "5", "20", "50" })
+    int size;
+
+    @Param({ "0.5", "1.0" })
+    double clueDensity;
+
+    private String spec;
+    private Object agentC1;
+    private Object agentC1Decomposed;
+    private Object agentC2;
+    private Object agentC3;
+
+    /**
+     * A board loaded again before every run.
+     */
+    @State(Scope.Thread)
+    public static class FreshBoard {
+        Object game;
+
+        @Setup(Level.Invocation)
+        public void load(SatAgentBenchmark benchmark) {
+            game = Mosaic.game(benchmark.spec);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Throwable {
+        spec = Mosaic.randomSpec(size, clueDensity, 1);
+        agentC1 = (Object) Mosaic.NEW_AGENT_C1.invokeExact(false);
+        agentC1Decomposed = (Object) Mosaic.NEW_AGENT_C1.invokeExact(true);
+        agentC2 = (Object) Mosaic.NEW_AGENT_C2.invokeExact(true);
+        agentC3 = (Object) Mosaic.NEW_AGENT_C3.invokeExact();
+    }
+
+    @Benchmark
+    public Object agentC1(FreshBoard board) throws Throwable {
+        Mosaic.RUN_C1.invokeExact(agentC1, board.game, false);
+        return board.game;
+    }
+
+    @Benchmark
+    public Object agentC1Decomposed(FreshBoard board) throws Throwable {
+        Mosaic.RUN_C1.invokeExact(agentC1Decomposed, board.game, false);
+        return board.game;
+    }
+
+    @Benchmark
+    public Object agentC2(FreshBoard board) throws Throwable {
+        Mosaic.RUN_C2.invokeExact(agentC2, board.game, false);
+        return board.game;
+    }
+
+    @Benchmark
+    public Object agentC3(FreshBoard board) throws Throwable {
+        Mosaic.RUN_C3.invokeExact(agentC3, board.game, false);
+        return board.game;
+    }
+}